@@ -4,6 +4,7 @@ import javafx.application.Application;
 import javafx.stage.Stage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.PieceSet;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
 /**
@@ -21,6 +22,8 @@ public class App extends Application {
      */
     public static void main(String[] args) {
         logger.info("Starting client");
+        // Load the pieces now, so that a broken piece set is reported before anything is shown
+        logger.info("Playing with piece set " + PieceSet.getActive());
         launch();
     }
 
@@ -0,0 +1,85 @@
+package uk.ac.soton.comp1206;
+
+import uk.ac.soton.comp1206.bot.Move;
+import uk.ac.soton.comp1206.bot.Policy;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.TimingWheel;
+
+/**
+ * A game with no window, played to the end by a policy, as the Simulator and the Tuner play them.
+ *
+ * The game runs on a virtual timing wheel of its own, so the countdown is skipped through rather than waited for: when
+ * the policy has no legal move the wheel is moved straight to the end of the countdown, and each move can be made to
+ * take a fixed amount of game time. Commands run straight away on the playing thread, since nothing else uses the
+ * game's inbox.
+ */
+final class HeadlessGame {
+    /**
+     * Timing wheel the game counts down on
+     */
+    private final TimingWheel wheel = new TimingWheel(TimingWheel.DEFAULT_TICK, TimingWheel.DEFAULT_SIZE);
+    /**
+     * The game
+     */
+    private final Game game;
+    /**
+     * Number of pieces after which the game is stopped
+     */
+    private final int maxPieces;
+    /**
+     * Whether the game has ended
+     */
+    private boolean over = false;
+    /**
+     * Number of pieces placed
+     */
+    private int placed = 0;
+
+    /**
+     * Create a game by the shared options
+     * @param options options of the tool playing it
+     * @param seed    seed for the pieces
+     */
+    HeadlessGame(HeadlessOptions options, long seed) {
+        this.maxPieces = options.getMaxPieces();
+        this.game = new Game(options.getSize(), options.getSize(), wheel, options.generator(seed));
+        game.setNoPlacementPenalty(options.getPenalty());
+        game.setOnGameOver(() -> {
+            over = true;
+            game.stopTimer();
+        });
+    }
+
+    /**
+     * Play the game until it ends or the piece limit is reached
+     * @param policy   policy to play with
+     * @param moveTime game time each move takes, in milliseconds
+     * @return the game, with its timer stopped
+     */
+    Game play(Policy policy, long moveTime) {
+        game.start();
+        while (!over && placed < maxPieces) {
+            Move move = policy.choose(game);
+            if (move == null) {
+                // Nothing fits, so skip to the end of the countdown
+                wheel.advance(Math.max(game.getTimeRemaining(), TimingWheel.DEFAULT_TICK));
+                continue;
+            }
+            move.play(game);
+            placed++;
+            if (moveTime > 0) {
+                wheel.advance(moveTime);
+            }
+        }
+        game.stopTimer();
+        return game;
+    }
+
+    /**
+     * Get the number of pieces placed
+     * @return number of pieces
+     */
+    int getPlaced() {
+        return placed;
+    }
+}
@@ -0,0 +1,189 @@
+package uk.ac.soton.comp1206;
+
+import uk.ac.soton.comp1206.bot.SearchEngine;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.NoPlacementPenalty;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+import uk.ac.soton.comp1206.game.PieceSet;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.BiPredicate;
+
+/**
+ * Options shared by the tools that play games with no window, the Simulator and the Tuner: the number of threads, the
+ * board size, the piece limit, how pieces are dealt, what happens when nothing fits, the search depth and the seed.
+ * They are read from the command line along with each tool's own options.
+ */
+final class HeadlessOptions {
+    /**
+     * Number of games to play at once
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+    /**
+     * Width and height of the board
+     */
+    private int size = 5;
+    /**
+     * Number of pieces after which a game is stopped, in case the policy never loses
+     */
+    private int maxPieces;
+    /**
+     * How pieces are dealt, uniform or bag
+     */
+    private String deal = "uniform";
+    /**
+     * What happens when no piece fits
+     */
+    private NoPlacementPenalty penalty = NoPlacementPenalty.WAIT;
+    /**
+     * Number of pieces the search places for each move it rates
+     */
+    private int depth = 1;
+    /**
+     * Seed for the pieces and anything else random
+     */
+    private long seed = System.nanoTime();
+
+    /**
+     * Create the options with their defaults
+     * @param maxPieces default number of pieces after which a game is stopped
+     */
+    HeadlessOptions(int maxPieces) {
+        this.maxPieces = maxPieces;
+    }
+
+    /**
+     * Turn down the logging, since per-move logging would swamp the output and the run time. This has to happen
+     * before any logger is created.
+     */
+    static void quietLogging() {
+        System.setProperty("org.apache.logging.log4j.simplelog.level", "WARN");
+    }
+
+    /**
+     * Read the options from the command line, handing any that are not shared to the tool
+     * @param args commandline arguments
+     * @param tool reads one of the tool's own options, returning false if it is not one
+     */
+    void parse(String[] args, BiPredicate<String, String> tool) {
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String option = args[i];
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--threads" -> threads = Integer.parseInt(value);
+                    case "--size" -> size = Integer.parseInt(value);
+                    case "--max-pieces" -> maxPieces = Integer.parseInt(value);
+                    case "--pieces" -> deal = value;
+                    case "--piece-set" -> loadPieceSet(value);
+                    case "--no-placement" -> penalty = penalty(value);
+                    case "--depth" -> depth = Integer.parseInt(value);
+                    case "--seed" -> seed = Long.parseLong(value);
+                    default -> {
+                        if (!tool.test(option, value)) {
+                            throw new IllegalArgumentException("Unknown option: " + option);
+                        }
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + value);
+            }
+        }
+        if (threads < 1 || maxPieces < 1 || depth < 1 || depth > SearchEngine.MAX_DEPTH) {
+            throw new IllegalArgumentException("Invalid options");
+        }
+        if (size < 1 || size > Grid.MAX_SIZE) {
+            throw new IllegalArgumentException("Size must be from 1 to " + Grid.MAX_SIZE + ": " + size);
+        }
+        if (!deal.equals("uniform") && !deal.equals("bag")) {
+            throw new IllegalArgumentException("Unknown piece distribution: " + deal);
+        }
+    }
+
+    /**
+     * Read what happens when no piece fits
+     * @param name wait, life or end
+     * @return the penalty
+     */
+    private static NoPlacementPenalty penalty(String name) {
+        return switch (name) {
+            case "wait" -> NoPlacementPenalty.WAIT;
+            case "life" -> NoPlacementPenalty.LOSE_LIFE;
+            case "end" -> NoPlacementPenalty.END_GAME;
+            default -> throw new IllegalArgumentException("Unknown no placement penalty: " + name);
+        };
+    }
+
+    /**
+     * Play with the pieces from a piece set file
+     * @param file piece set file
+     */
+    private static void loadPieceSet(String file) {
+        try {
+            PieceSet.setActive(PieceSet.load(Path.of(file)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot load piece set " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Create a generator dealing pieces the chosen way
+     * @param seed seed for the pieces
+     * @return the generator
+     */
+    PieceGenerator generator(long seed) {
+        return deal.equals("bag") ? PieceGenerator.bag(seed) : PieceGenerator.uniform(seed);
+    }
+
+    /**
+     * Get the number of games to play at once
+     * @return number of threads
+     */
+    int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Get the width and height of the board
+     * @return size
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the number of pieces after which a game is stopped
+     * @return number of pieces
+     */
+    int getMaxPieces() {
+        return maxPieces;
+    }
+
+    /**
+     * Get what happens when no piece fits
+     * @return penalty
+     */
+    NoPlacementPenalty getPenalty() {
+        return penalty;
+    }
+
+    /**
+     * Get the number of pieces the search places for each move it rates
+     * @return depth
+     */
+    int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get the seed
+     * @return seed
+     */
+    long getSeed() {
+        return seed;
+    }
+}
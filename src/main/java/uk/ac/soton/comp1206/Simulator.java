@@ -0,0 +1,366 @@
+package uk.ac.soton.comp1206;
+
+import uk.ac.soton.comp1206.bot.Move;
+import uk.ac.soton.comp1206.bot.Policy;
+import uk.ac.soton.comp1206.bot.SearchEngine;
+import uk.ac.soton.comp1206.bot.TranspositionTable;
+import uk.ac.soton.comp1206.bot.WeightedHeuristic;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GameArena;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+/**
+ * Plays many complete games with no window, driven by an automated policy, and reports how they went. Used for
+ * balancing and to catch regressions in the rules.
+ *
+ * Every game is a HeadlessGame, on its own virtual timing wheel, and each move can be made to take a fixed amount of
+ * game time. Games can also lose a life or end as soon as no piece fits, without any countdown. Games are spread over
+ * all cores. Each game's pieces are dealt from the seed plus the number of the game, and the random policy's choices
+ * are made from a seed drawn from the same number, so the same seed plays the same games however many threads play
+ * them.
+ *
+ * With --arena, games are kept off the heap in a GameArena instead, that many at once. Each thread takes turns making
+ * one move in every game of its share of the arena, starting a new game in a slot as soon as the last one ends, so the
+ * heap stays the same size however many games are in flight. The same seed gives the same games either way.
+ *
+ * Usage: Simulator [--games N] [--policy random|greedy|search] [--threads N] [--size N] [--move-time MS]
+ * [--max-pieces N] [--pieces uniform|bag] [--piece-set FILE] [--no-placement wait|life|end] [--depth 1|2]
+ * [--weights F,T,H] [--arena N] [--seed N] [--format csv|json]
+ */
+public class Simulator {
+    /**
+     * Number of games to play
+     */
+    private int games = 1000;
+    /**
+     * Name of the policy to play with
+     */
+    private String policy = "search";
+    /**
+     * Options shared with the tuner
+     */
+    private final HeadlessOptions options = new HeadlessOptions(10000);
+    /**
+     * Game time each move takes, in milliseconds
+     */
+    private long moveTime = 0;
+    /**
+     * Weights of the search policy's heuristic, for its filled blocks, transitions and holes
+     */
+    private double[] weights = WeightedHeuristic.getDefaultWeights();
+    /**
+     * Number of games kept in an off-heap arena at once, or 0 to play each game as a Game
+     */
+    private int arena = 0;
+    /**
+     * Engine of the search policy, shared by every game, or null for the other policies
+     */
+    private SearchEngine engine;
+    /**
+     * Output format, csv or json
+     */
+    private String format = "csv";
+    /**
+     * Final score of each game
+     */
+    private int[] scores;
+    /**
+     * Lines cleared in each game
+     */
+    private int[] lines;
+    /**
+     * Level reached in each game
+     */
+    private int[] levels;
+    /**
+     * Pieces placed in each game
+     */
+    private int[] pieces;
+
+    /**
+     * Run a simulation from the command line
+     * @param args commandline arguments
+     */
+    public static void main(String[] args) {
+        HeadlessOptions.quietLogging();
+        var simulator = new Simulator();
+        try {
+            simulator.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: Simulator [--games N] [--policy random|greedy|search] [--threads N] "
+                    + "[--size N] [--move-time MS] [--max-pieces N] [--pieces uniform|bag] [--piece-set FILE] "
+                    + "[--no-placement wait|life|end] [--depth 1|2] [--weights F,T,H] [--arena N] [--seed N] "
+                    + "[--format csv|json]");
+            System.exit(1);
+        }
+        System.out.println(simulator.run());
+    }
+
+    /**
+     * Read the options from the command line
+     * @param args commandline arguments
+     */
+    private void parse(String[] args) {
+        options.parse(args, (option, value) -> {
+            switch (option) {
+                case "--games" -> games = Integer.parseInt(value);
+                case "--policy" -> policy = value;
+                case "--move-time" -> moveTime = Long.parseLong(value);
+                case "--weights" -> weights = weights(value);
+                case "--arena" -> arena = Integer.parseInt(value);
+                case "--format" -> format = value;
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        });
+        if (games < 1 || moveTime < 0 || arena < 0) {
+            throw new IllegalArgumentException("Invalid options");
+        }
+        if (!format.equals("csv") && !format.equals("json")) {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+        if (!policy.equals("random") && !policy.equals("greedy") && !policy.equals("search")) {
+            throw new IllegalArgumentException("Unknown policy: " + policy);
+        }
+        if (arena > 0 && policy.equals("random")) {
+            throw new IllegalArgumentException("The random policy cannot play games in an arena");
+        }
+    }
+
+    /**
+     * Read the weights of the search policy's heuristic
+     * @param list weights separated by commas
+     * @return the weights
+     */
+    private static double[] weights(String list) {
+        double[] weights = Arrays.stream(list.split(",")).mapToDouble(Double::parseDouble).toArray();
+        if (weights.length != WeightedHeuristic.FEATURES) {
+            throw new IllegalArgumentException("Expected " + WeightedHeuristic.FEATURES + " weights: " + list);
+        }
+        return weights;
+    }
+
+    /**
+     * Get a factory making a policy for each game from a seed
+     * @return policy factory
+     */
+    private LongFunction<Policy> policies() {
+        switch (policy) {
+            case "random":
+                return seed -> Policy.random(new SplittableRandom(seed));
+            case "greedy":
+                return seed -> Policy.greedy();
+            case "search":
+                int depth = options.getDepth();
+                var table = depth > 1 ? new TranspositionTable() : null;
+                engine = new SearchEngine(ForkJoinPool.commonPool(), new WeightedHeuristic(weights), table, depth);
+                SearchEngine shared = engine;
+                return seed -> Policy.search(shared);
+            default:
+                throw new IllegalArgumentException("Unknown policy: " + policy);
+        }
+    }
+
+    /**
+     * Play every game and summarise them
+     * @return the report
+     */
+    private String run() {
+        scores = new int[games];
+        lines = new int[games];
+        levels = new int[games];
+        pieces = new int[games];
+        LongFunction<Policy> policies = policies();
+        int threads = options.getThreads();
+        long seed = options.getSeed();
+        var claimed = new AtomicInteger();
+
+        // Workers run in the pool, so searches fork into the same pool rather than another one
+        var pool = new ForkJoinPool(threads);
+        var workers = new Future<?>[threads];
+        GameArena slots = null;
+        if (arena > 0) {
+            int size = options.getSize();
+            slots = new GameArena(size, size, Math.min(arena, games), options.generator(seed));
+            slots.setNoPlacementPenalty(options.getPenalty());
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            if (slots != null) {
+                GameArena shared = slots;
+                int from = (int) ((long) shared.getCapacity() * i / threads);
+                int to = (int) ((long) shared.getCapacity() * (i + 1) / threads);
+                workers[i] = pool.submit(() -> play(shared, from, to, claimed));
+                continue;
+            }
+            workers[i] = pool.submit(() -> {
+                for (int game = claimed.getAndIncrement(); game < games; game = claimed.getAndIncrement()) {
+                    // Each game has its own policy, so what it plays does not depend on which thread plays it
+                    play(game, policies.apply(new SplittableRandom(seed + game).nextLong()));
+                }
+            });
+        }
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Simulation failed", e);
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return report(seconds);
+    }
+
+    /**
+     * Play one game to the end
+     * @param index  number of the game
+     * @param policy policy to play with
+     */
+    private void play(int index, Policy policy) {
+        var headless = new HeadlessGame(options, options.getSeed() + index);
+        Game game = headless.play(policy, moveTime);
+        scores[index] = game.getScore();
+        lines[index] = game.getLines();
+        levels[index] = game.getLevel();
+        pieces[index] = headless.getPlaced();
+    }
+
+    /**
+     * Play games in a share of the arena's slots, a move in each game in turn, until no games are left to start
+     * @param arena   arena holding the games
+     * @param from    first slot
+     * @param to      one past the last slot
+     * @param claimed number of games started so far, by every thread
+     */
+    private void play(GameArena arena, int from, int to, AtomicInteger claimed) {
+        GameArena.Worker worker = arena.newWorker();
+        int maxPieces = options.getMaxPieces();
+        // Only the search policy looks at the next piece, as in Policy
+        boolean greedy = policy.equals("greedy");
+        SearchEngine chooser = greedy ? new SearchEngine(grid -> 0) : engine;
+        int playing = 0;
+        for (int slot = from; slot < to; slot++) {
+            if (startNext(worker, slot, claimed)) playing++;
+        }
+        while (playing > 0) {
+            for (int slot = from; slot < to; slot++) {
+                if (!arena.isPlaying(slot)) continue;
+                if (arena.getPlaced(slot) < maxPieces) {
+                    Move move = chooser.best(worker.getGrid(slot), arena.getCurrentPiece(slot),
+                            greedy ? null : arena.getNextPiece(slot), arena.getMultiplier(slot));
+                    if (move == null) {
+                        // Nothing fits, so skip to the end of the countdown
+                        worker.expire(slot);
+                    } else {
+                        move.play(worker, slot);
+                        if (moveTime > 0) {
+                            worker.advance(slot, moveTime);
+                        }
+                    }
+                }
+                if (!arena.isPlaying(slot) || arena.getPlaced(slot) >= maxPieces) {
+                    int index = (int) (arena.getSeed(slot) - options.getSeed());
+                    scores[index] = arena.getScore(slot);
+                    lines[index] = arena.getLines(slot);
+                    levels[index] = arena.getLevel(slot);
+                    pieces[index] = arena.getPlaced(slot);
+                    if (!startNext(worker, slot, claimed)) playing--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Start the next game no thread has started yet in a slot, or free the slot if there are none left
+     * @param worker  worker changing the arena
+     * @param slot    slot to play in
+     * @param claimed number of games started so far, by every thread
+     * @return true if a game was started
+     */
+    private boolean startNext(GameArena.Worker worker, int slot, AtomicInteger claimed) {
+        int game = claimed.getAndIncrement();
+        if (game >= games) {
+            worker.free(slot);
+            return false;
+        }
+        worker.start(slot, options.getSeed() + game);
+        return true;
+    }
+
+    /**
+     * Summarise the games in the chosen format
+     * @param seconds time taken
+     * @return the report
+     */
+    private String report(double seconds) {
+        int[] sorted = scores.clone();
+        Arrays.sort(sorted);
+        String[] names = {"policy", "games", "threads", "size", "seconds", "games_per_second", "score_mean", "score_min",
+                "score_p10", "score_p25", "score_p50", "score_p75", "score_p90", "score_p99", "score_max",
+                "lines_mean", "level_mean", "level_max", "pieces_mean", "depth", "table_hit_rate"};
+        Object[] values = {policy, games, options.getThreads(), options.getSize(), seconds, games / seconds, mean(scores), sorted[0],
+                percentile(sorted, 10), percentile(sorted, 25), percentile(sorted, 50), percentile(sorted, 75),
+                percentile(sorted, 90), percentile(sorted, 99), sorted[games - 1], mean(lines), mean(levels),
+                Arrays.stream(levels).max().orElse(0), mean(pieces), options.getDepth(),
+                engine == null || engine.getTable() == null ? 0.0 : engine.getTable().getHitRate()};
+
+        var report = new StringBuilder();
+        if (format.equals("json")) {
+            report.append('{');
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0) report.append(", ");
+                report.append('"').append(names[i]).append("\": ");
+                report.append(values[i] instanceof String ? "\"" + values[i] + "\"" : format(values[i]));
+            }
+            report.append('}');
+        } else {
+            report.append(String.join(",", names)).append('\n');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) report.append(',');
+                report.append(format(values[i]));
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * Format a value for the report
+     * @param value value
+     * @return formatted value
+     */
+    private static String format(Object value) {
+        return value instanceof Double ? String.format(Locale.ROOT, "%.3f", value) : String.valueOf(value);
+    }
+
+    /**
+     * Get the mean of some values
+     * @param values values
+     * @return mean
+     */
+    private static double mean(int[] values) {
+        return Arrays.stream(values).average().orElse(0);
+    }
+
+    /**
+     * Get a percentile of some sorted values, by the nearest rank
+     * @param sorted     sorted values
+     * @param percentile percentile from 0 to 100
+     * @return value at that percentile
+     */
+    private static int percentile(int[] sorted, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
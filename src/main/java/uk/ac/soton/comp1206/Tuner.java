@@ -0,0 +1,381 @@
+package uk.ac.soton.comp1206;
+
+import uk.ac.soton.comp1206.bot.Policy;
+import uk.ac.soton.comp1206.bot.SearchEngine;
+import uk.ac.soton.comp1206.bot.TranspositionTable;
+import uk.ac.soton.comp1206.bot.WeightedHeuristic;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Tunes the weights of WeightedHeuristic by self-play, with no window, using the cross-entropy method.
+ *
+ * Each generation draws a population of weights from a normal distribution around the current mean, the mean itself
+ * being the first, and every candidate plays the same games with the search policy. The best few candidates by mean
+ * score, the elite, then give the mean and spread of the next generation. A little extra spread, shrinking each
+ * generation, keeps the search from settling too soon. Every game of every candidate is a task of its own on a
+ * ForkJoinPool, so idle threads steal games from busy ones, and searches inside the games fork into the same pool.
+ *
+ * After each generation the population, its scores and the distribution are written to a checkpoint file, replacing
+ * the last one. If the checkpoint already exists when the tuner starts, tuning carries on from the generation after
+ * it, with the seed it was started with, so an interrupted run ends up the same as one that was never stopped.
+ *
+ * Each generation is reported as a line of CSV, with the best candidate's weights. The mean of the last generation
+ * is the one to use, for example with the simulator's --weights option.
+ *
+ * Usage: Tuner [--generations N] [--population N] [--elite N] [--games N] [--spread X] [--threads N] [--size N]
+ * [--max-pieces N] [--pieces uniform|bag] [--piece-set FILE] [--no-placement wait|life|end] [--depth 1|2]
+ * [--checkpoint FILE] [--seed N]
+ */
+public class Tuner {
+    /**
+     * Number of generations to tune for, including any already in the checkpoint
+     */
+    private int generations = 20;
+    /**
+     * Number of candidates in each generation
+     */
+    private int population = 32;
+    /**
+     * Number of best candidates the next generation is drawn around
+     */
+    private int elite = 8;
+    /**
+     * Number of games each candidate plays
+     */
+    private int games = 20;
+    /**
+     * Standard deviation of every weight in the first generation
+     */
+    private double spread = 1.0;
+    /**
+     * Options shared with the simulator. Games are stopped after fewer pieces, so that good candidates don't take
+     * forever.
+     */
+    private final HeadlessOptions options = new HeadlessOptions(1000);
+    /**
+     * File the population is saved to after each generation
+     */
+    private Path checkpoint = Path.of("tuner-checkpoint.properties");
+    /**
+     * Seed for the population and the pieces, the one the checkpoint was started with if there is one
+     */
+    private long seed;
+    /**
+     * Number of the next generation to play
+     */
+    private int generation = 0;
+    /**
+     * Mean of each weight
+     */
+    private double[] mean = WeightedHeuristic.getDefaultWeights();
+    /**
+     * Standard deviation of each weight
+     */
+    private double[] deviation;
+
+    /**
+     * Run the tuner from the command line
+     * @param args commandline arguments
+     */
+    public static void main(String[] args) {
+        HeadlessOptions.quietLogging();
+        var tuner = new Tuner();
+        try {
+            tuner.parse(args);
+            tuner.run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: Tuner [--generations N] [--population N] [--elite N] [--games N] [--spread X] "
+                    + "[--threads N] [--size N] [--max-pieces N] [--pieces uniform|bag] [--piece-set FILE] "
+                    + "[--no-placement wait|life|end] [--depth 1|2] [--checkpoint FILE] [--seed N]");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Cannot use checkpoint " + tuner.checkpoint + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Read the options from the command line
+     * @param args commandline arguments
+     */
+    private void parse(String[] args) {
+        options.parse(args, (option, value) -> {
+            switch (option) {
+                case "--generations" -> generations = Integer.parseInt(value);
+                case "--population" -> population = Integer.parseInt(value);
+                case "--elite" -> elite = Integer.parseInt(value);
+                case "--games" -> games = Integer.parseInt(value);
+                case "--spread" -> spread = Double.parseDouble(value);
+                case "--checkpoint" -> checkpoint = Path.of(value);
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        });
+        if (generations < 1 || population < 2 || elite < 1 || elite > population || games < 1 || !(spread > 0)) {
+            throw new IllegalArgumentException("Invalid options");
+        }
+        seed = options.getSeed();
+        deviation = new double[WeightedHeuristic.FEATURES];
+        Arrays.fill(deviation, spread);
+    }
+
+    /**
+     * Tune for every generation not yet in the checkpoint, reporting each one
+     * @throws IOException if the checkpoint cannot be read or written
+     */
+    private void run() throws IOException {
+        if (Files.exists(checkpoint)) {
+            resume();
+            System.err.println("Resuming from generation " + generation + " of " + checkpoint);
+        }
+        System.out.println("generation,seconds,best_score,elite_score,population_score,"
+                + "best_filled,best_transitions,best_holes,mean_filled,mean_transitions,mean_holes");
+        var pool = new ForkJoinPool(options.getThreads());
+        try {
+            for (; generation < generations; generation++) {
+                long start = System.nanoTime();
+                double[][] candidates = sample();
+                double[] scores = evaluate(pool, candidates);
+                Integer[] ranking = IntStream.range(0, population).boxed()
+                        .sorted(Comparator.comparingDouble(candidate -> -scores[candidate]))
+                        .toArray(Integer[]::new);
+                double eliteScore = 0;
+                for (int rank = 0; rank < elite; rank++) {
+                    eliteScore += scores[ranking[rank]] / elite;
+                }
+                double[] best = candidates[ranking[0]];
+                refit(candidates, ranking);
+                save(candidates, scores);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.println(String.format(Locale.ROOT, "%d,%.3f,%.3f,%.3f,%.3f,%s,%s", generation, seconds,
+                        scores[ranking[0]], eliteScore, Arrays.stream(scores).average().orElse(0), format(best),
+                        format(mean)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Draw this generation's candidates around the mean, which is always the first
+     * @return weights of each candidate
+     */
+    private double[][] sample() {
+        // Seeded by generation, so that a resumed run draws the same candidates
+        var random = new SplittableRandom(seed ^ (generation + 1) * 0x9E3779B97F4A7C15L);
+        var candidates = new double[population][];
+        candidates[0] = mean.clone();
+        for (int candidate = 1; candidate < population; candidate++) {
+            candidates[candidate] = new double[WeightedHeuristic.FEATURES];
+            for (int feature = 0; feature < WeightedHeuristic.FEATURES; feature++) {
+                candidates[candidate][feature] = mean[feature] + deviation[feature] * random.nextGaussian();
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Play every candidate's games, all candidates getting the same pieces
+     * @param pool       pool to play in
+     * @param candidates weights of each candidate
+     * @return mean score of each candidate
+     */
+    private double[] evaluate(ForkJoinPool pool, double[][] candidates) {
+        var engines = new SearchEngine[population];
+        int depth = options.getDepth();
+        for (int candidate = 0; candidate < population; candidate++) {
+            // Tables are per candidate, since the values they cache depend on the weights
+            var table = depth > 1 ? new TranspositionTable() : null;
+            engines[candidate] = new SearchEngine(pool, new WeightedHeuristic(candidates[candidate]), table, depth);
+        }
+        var results = new int[population * games];
+        pool.invoke(new Games(engines, results, 0, results.length));
+
+        var scores = new double[population];
+        for (int candidate = 0; candidate < population; candidate++) {
+            for (int game = 0; game < games; game++) {
+                scores[candidate] += results[candidate * games + game];
+            }
+            scores[candidate] /= games;
+        }
+        return scores;
+    }
+
+    /**
+     * Move the mean and spread of the weights to those of the elite. The extra spread starts at half the spread
+     * asked for and shrinks each generation.
+     * @param candidates weights of each candidate
+     * @param ranking    candidates from best to worst
+     */
+    private void refit(double[][] candidates, Integer[] ranking) {
+        double noise = spread / (generation + 2);
+        for (int feature = 0; feature < WeightedHeuristic.FEATURES; feature++) {
+            double sum = 0;
+            for (int rank = 0; rank < elite; rank++) {
+                sum += candidates[ranking[rank]][feature];
+            }
+            double average = sum / elite;
+            double squares = 0;
+            for (int rank = 0; rank < elite; rank++) {
+                double difference = candidates[ranking[rank]][feature] - average;
+                squares += difference * difference;
+            }
+            mean[feature] = average;
+            deviation[feature] = Math.sqrt(squares / elite) + noise;
+        }
+    }
+
+    /**
+     * Play one game to the end
+     * @param engine search engine rating moves with the candidate's weights
+     * @param seed   seed for the pieces
+     * @return the final score
+     */
+    private int play(SearchEngine engine, long seed) {
+        return new HeadlessGame(options, seed).play(Policy.search(engine), 0).getScore();
+    }
+
+    /**
+     * Write the generation just played and the distribution of the next one to the checkpoint, replacing it in one
+     * step so that an interrupted write leaves the last one whole
+     * @param candidates weights of each candidate
+     * @param scores     mean score of each candidate
+     * @throws IOException if the checkpoint cannot be written
+     */
+    private void save(double[][] candidates, double[] scores) throws IOException {
+        var properties = new Properties();
+        properties.setProperty("seed", Long.toString(seed));
+        properties.setProperty("generation", Integer.toString(generation + 1));
+        properties.setProperty("mean", join(mean));
+        properties.setProperty("deviation", join(deviation));
+        for (int candidate = 0; candidate < population; candidate++) {
+            properties.setProperty("candidate." + candidate, join(candidates[candidate]));
+            properties.setProperty("score." + candidate, Double.toString(scores[candidate]));
+        }
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (var writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            properties.store(writer, "TetrECS heuristic tuner checkpoint");
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Carry on from the checkpoint
+     * @throws IOException if the checkpoint cannot be read or is not valid
+     */
+    private void resume() throws IOException {
+        var properties = new Properties();
+        try (var reader = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            seed = Long.parseLong(properties.getProperty("seed"));
+            generation = Integer.parseInt(properties.getProperty("generation"));
+            mean = split(properties.getProperty("mean"));
+            deviation = split(properties.getProperty("deviation"));
+        } catch (NullPointerException | NumberFormatException e) {
+            throw new IOException("Not a valid checkpoint", e);
+        }
+        if (mean.length != WeightedHeuristic.FEATURES || deviation.length != WeightedHeuristic.FEATURES) {
+            throw new IOException("Expected " + WeightedHeuristic.FEATURES + " weights");
+        }
+    }
+
+    /**
+     * Write weights for the checkpoint, exactly
+     * @param weights weights
+     * @return the weights separated by spaces
+     */
+    private static String join(double[] weights) {
+        return Arrays.stream(weights).mapToObj(Double::toString).collect(Collectors.joining(" "));
+    }
+
+    /**
+     * Read weights from the checkpoint
+     * @param text weights separated by spaces
+     * @return the weights
+     */
+    private static double[] split(String text) {
+        return Arrays.stream(text.strip().split("\\s+")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    /**
+     * Format weights for the report
+     * @param weights weights
+     * @return the weights separated by commas
+     */
+    private static String format(double[] weights) {
+        return Arrays.stream(weights).mapToObj(weight -> String.format(Locale.ROOT, "%.4f", weight))
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * A range of games, each game number standing for a candidate and one of its games, split in half until a single
+     * game is left so that idle threads can steal the other half
+     */
+    private class Games extends RecursiveAction {
+        /**
+         * Tasks are serializable as a ForkJoinTask, though these are never serialized
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * Engine of each candidate
+         */
+        private final SearchEngine[] engines;
+        /**
+         * Final score of each game
+         */
+        private final int[] results;
+        /**
+         * First game
+         */
+        private final int from;
+        /**
+         * One past the last game
+         */
+        private final int to;
+
+        /**
+         * Create a range of games
+         * @param engines engine of each candidate
+         * @param results final score of each game, filled in as games end
+         * @param from    first game
+         * @param to      one past the last game
+         */
+        Games(SearchEngine[] engines, int[] results, int from, int to) {
+            this.engines = engines;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                // The same pieces for every candidate, and new ones each generation
+                long pieceSeed = seed + (long) generation * games + from % games;
+                results[from] = play(engines[from / games], pieceSeed);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Games(engines, results, from, middle), new Games(engines, results, middle, to));
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package uk.ac.soton.comp1206.bot;
+
+/**
+ * A Heuristic that can also rate a whole BoardBatch at once, much faster than one Grid at a time. Each board in the
+ * batch must get exactly the rating evaluate gives the same board, so that searches find the same moves either way.
+ */
+public interface BatchHeuristic extends Heuristic {
+    /**
+     * Rate every board in a batch
+     * @param batch  boards to rate
+     * @param values rating of each board, written from index 0, at least as long as the batch
+     */
+    void evaluate(BoardBatch batch, double[] values);
+}
@@ -0,0 +1,160 @@
+package uk.ac.soton.comp1206.bot;
+
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * A batch of boards of the same size to be rated together by a BatchHeuristic. Boards of up to 64 blocks are held as
+ * their occupancy bitboards side by side in one array, so the features of many boards can be worked out at once, a
+ * whole vector of boards per instruction where the Vector API is available.
+ *
+ * Batches are reused: fill one with add, rate it, then clear it for the next lot. A batch keeps scratch space for
+ * rating, so it must only be used by one thread at a time.
+ */
+public class BoardBatch {
+    /**
+     * Largest number of blocks a board in a batch can have
+     */
+    public static final int MAX_CELLS = 64;
+    /**
+     * Number of columns of every board
+     */
+    private final int cols;
+    /**
+     * Number of rows of every board
+     */
+    private final int rows;
+    /**
+     * Occupancy bitboard of each board, bit (y * cols + x) set when the block at x and y is filled
+     */
+    private final long[] boards;
+    /**
+     * Worker that works out the features of the boards
+     */
+    private final FeatureKernel kernel;
+    /**
+     * Number of boards in the batch
+     */
+    private int size = 0;
+
+    /**
+     * Create an empty batch
+     * @param cols     number of columns of every board
+     * @param rows     number of rows of every board
+     * @param capacity largest number of boards
+     */
+    public BoardBatch(int cols, int rows, int capacity) {
+        if (!fits(cols, rows)) {
+            throw new IllegalArgumentException("Boards of " + cols + " x " + rows + " are too big to batch");
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.boards = new long[capacity];
+        this.kernel = FeatureKernel.create(cols, rows);
+    }
+
+    /**
+     * Check whether boards of a size can be batched
+     * @param cols number of columns
+     * @param rows number of rows
+     * @return true if they have at most MAX_CELLS blocks
+     */
+    public static boolean fits(int cols, int rows) {
+        return cols * rows <= MAX_CELLS;
+    }
+
+    /**
+     * Add a board to the batch
+     * @param grid board of the batch's size
+     * @return index of the board in the batch
+     */
+    public int add(Grid grid) {
+        if (grid.getCols() != cols || grid.getRows() != rows) {
+            throw new IllegalArgumentException("Grid size mismatch: " + grid.getCols() + " x " + grid.getRows());
+        }
+        return add(grid.getOccupancy());
+    }
+
+    /**
+     * Add a board to the batch
+     * @param board occupancy bitboard, bit (y * cols + x) set when the block at x and y is filled
+     * @return index of the board in the batch
+     */
+    public int add(long board) {
+        if (size == boards.length) {
+            throw new IllegalStateException("Batch is full: " + size);
+        }
+        boards[size] = board;
+        return size++;
+    }
+
+    /**
+     * Get a board in the batch
+     * @param index index of the board
+     * @return occupancy bitboard
+     */
+    public long get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("No board " + index + " in a batch of " + size);
+        }
+        return boards[index];
+    }
+
+    /**
+     * Remove every board
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Get the number of boards in the batch
+     * @return number of boards
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the largest number of boards the batch can hold
+     * @return capacity
+     */
+    public int getCapacity() {
+        return boards.length;
+    }
+
+    /**
+     * Get the number of columns of every board
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows of every board
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Check whether the boards are rated with the Vector API rather than one at a time
+     * @return true if vectorised
+     */
+    public boolean isVectorised() {
+        return kernel instanceof VectorKernel;
+    }
+
+    /**
+     * Rate every board as a weighted sum of its filled blocks, filled to empty transitions and holes, the features of
+     * WeightedHeuristic
+     * @param filled      weight of each filled block
+     * @param transitions weight of each transition
+     * @param holes       weight of each hole
+     * @param values      rating of each board, written from index 0
+     */
+    void weigh(double filled, double transitions, double holes, double[] values) {
+        kernel.weigh(boards, size, filled, transitions, holes, values);
+    }
+}
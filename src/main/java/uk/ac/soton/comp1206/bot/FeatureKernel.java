@@ -0,0 +1,141 @@
+package uk.ac.soton.comp1206.bot;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Works out the features of boards held as single-word bitboards, a whole board at a time. Every feature is a few
+ * shifts and masks of the bitboard against masks of the board's edges, worked out once for its size, followed by a
+ * bit count, so no row is visited on its own.
+ *
+ * This is the scalar version, used when the Vector API is not available. VectorKernel does the same for several
+ * boards per instruction. Use create to get the best one available.
+ */
+class FeatureKernel {
+    private static final Logger logger = LogManager.getLogger(FeatureKernel.class);
+    /**
+     * System property that turns the Vector API off when set to false
+     */
+    static final String PROPERTY = "tetrecs.vector";
+    /**
+     * Whether the Vector API can be used, decided once
+     */
+    private static final boolean VECTOR = vectorAvailable();
+    /**
+     * Number of columns
+     */
+    final int cols;
+    /**
+     * Every block of the board
+     */
+    final long all;
+    /**
+     * Blocks in the first column
+     */
+    final long firstColumn;
+    /**
+     * Blocks in the last column
+     */
+    final long lastColumn;
+    /**
+     * Blocks in the first row
+     */
+    final long firstRow;
+    /**
+     * Blocks in the last row
+     */
+    final long lastRow;
+    /**
+     * Blocks with a neighbour to their right
+     */
+    final long hasRight;
+    /**
+     * Blocks with a neighbour below
+     */
+    final long hasBelow;
+
+    /**
+     * Work out the masks for a board size
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    FeatureKernel(int cols, int rows) {
+        int cells = cols * rows;
+        this.cols = cols;
+        this.all = cells == 64 ? -1L : (1L << cells) - 1;
+        long first = 0;
+        for (int y = 0; y < rows; y++) {
+            first |= 1L << (y * cols);
+        }
+        this.firstColumn = first;
+        this.lastColumn = first << (cols - 1);
+        this.firstRow = cols == 64 ? -1L : (1L << cols) - 1;
+        this.lastRow = firstRow << (cols * (rows - 1));
+        this.hasRight = all & ~lastColumn;
+        this.hasBelow = all & ~lastRow;
+    }
+
+    /**
+     * Get the fastest kernel available for a board size
+     * @param cols number of columns
+     * @param rows number of rows
+     * @return the kernel
+     */
+    static FeatureKernel create(int cols, int rows) {
+        return VECTOR ? new VectorKernel(cols, rows) : new FeatureKernel(cols, rows);
+    }
+
+    /**
+     * Check whether the Vector API module is present and not turned off
+     * @return true if it can be used
+     */
+    private static boolean vectorAvailable() {
+        if (!Boolean.parseBoolean(System.getProperty(PROPERTY, "true"))) {
+            return false;
+        }
+        // The module is incubating, so it is only there when the JVM is started with --add-modules
+        boolean present = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        if (!present) {
+            logger.info("Vector API not available, rating boards one at a time");
+        }
+        return present;
+    }
+
+    /**
+     * Rate boards as a weighted sum of their filled blocks, filled to empty transitions and holes
+     * @param boards      occupancy bitboards
+     * @param count       number of boards to rate, from index 0
+     * @param filled      weight of each filled block
+     * @param transitions weight of each transition
+     * @param holes       weight of each hole
+     * @param values      rating of each board
+     */
+    void weigh(long[] boards, int count, double filled, double transitions, double holes, double[] values) {
+        weigh(boards, 0, count, filled, transitions, holes, values);
+    }
+
+    /**
+     * Rate a range of boards one at a time
+     * @param boards      occupancy bitboards
+     * @param from        first board
+     * @param to          one past the last board
+     * @param filled      weight of each filled block
+     * @param transitions weight of each transition
+     * @param holes       weight of each hole
+     * @param values      rating of each board
+     */
+    final void weigh(long[] boards, int from, int to, double filled, double transitions, double holes,
+            double[] values) {
+        for (int i = from; i < to; i++) {
+            long board = boards[i];
+            // Neighbouring blocks that differ, along rows and down columns
+            long across = (board ^ (board >>> 1)) & hasRight;
+            long down = (board ^ (board >>> cols)) & hasBelow;
+            // Empty blocks whose four neighbours are filled, where the edges of the board count as filled
+            long shut = ~board & ((board << 1) | firstColumn) & ((board >>> 1) | lastColumn)
+                    & ((board << cols) | firstRow) & ((board >>> cols) | lastRow) & all;
+            values[i] = filled * Long.bitCount(board) + transitions * (Long.bitCount(across) + Long.bitCount(down))
+                    + holes * Long.bitCount(shut);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package uk.ac.soton.comp1206.bot;
+
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * A Heuristic rates how good a board is to keep playing on, on top of the points a move scores straight away. Higher is
+ * better. Boards are rated from many threads at once, so implementations must be thread safe.
+ */
+public interface Heuristic {
+    /**
+     * Rate a board
+     * @param grid board after a move and its line clear, must not be modified
+     * @return rating of the board
+     */
+    double evaluate(Grid grid);
+}
@@ -0,0 +1,165 @@
+package uk.ac.soton.comp1206.bot;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.HintListener;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Works out hints, the best move for a position, on a background thread, so that asking for one never holds up the
+ * thread handling input.
+ *
+ * Each position is searched one piece deep first, which takes well under a millisecond, and that move is handed over
+ * straight away. The search is then refined by also placing the piece left over, and the better informed move replaces
+ * the first if it is found within the time budget. Asking for a new position abandons the search of the old one within
+ * microseconds, since searches check before every candidate move, and moves found for an old position are never
+ * handed over, even if they were already on their way.
+ *
+ * Moves are handed to the listener through an executor, such as Platform::runLater. A null move means that no move is
+ * known for the latest position yet, or that none is legal.
+ */
+public class HintEngine {
+    private static final Logger logger = LogManager.getLogger(HintEngine.class);
+    /**
+     * Default time allowed for refining each hint, in milliseconds
+     */
+    public static final long DEFAULT_BUDGET = 250;
+    /**
+     * Thread the searches are started from
+     */
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(task -> {
+        var thread = new Thread(task, "HintEngine");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Engine for the first, quick search
+     */
+    private final SearchEngine quick;
+    /**
+     * Engine for the refined search, also placing the piece left over
+     */
+    private final SearchEngine deep;
+    /**
+     * Listener to hand moves to
+     */
+    private final HintListener listener;
+    /**
+     * Executor the listener is called on
+     */
+    private final Executor executor;
+    /**
+     * Number of the latest request, which is the only one whose moves are wanted
+     */
+    private final AtomicLong latest = new AtomicLong();
+    /**
+     * Time allowed for refining each hint, in milliseconds
+     */
+    private volatile long budget = DEFAULT_BUDGET;
+
+    /**
+     * Create a hint engine
+     * @param heuristic heuristic to rate boards with
+     * @param listener  listener to hand moves to
+     * @param executor  executor to call the listener on
+     */
+    public HintEngine(Heuristic heuristic, HintListener listener, Executor executor) {
+        this.quick = new SearchEngine(ForkJoinPool.commonPool(), heuristic);
+        this.deep = new SearchEngine(ForkJoinPool.commonPool(), heuristic, new TranspositionTable(), 2);
+        this.listener = listener;
+        this.executor = executor;
+    }
+
+    /**
+     * Set the time allowed for refining each hint. The quick search always runs to the end.
+     * @param budget time in milliseconds
+     */
+    public void setBudget(long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Negative budget: " + budget);
+        }
+        this.budget = budget;
+    }
+
+    /**
+     * Get the time allowed for refining each hint
+     * @return time in milliseconds
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Start working out a hint for a position, abandoning the one before. Returns straight away.
+     * @param grid       board, which must not change from now on, so pass a copy
+     * @param current    current piece
+     * @param next       next piece
+     * @param multiplier score multiplier in effect
+     */
+    public void request(Grid grid, GamePiece current, GamePiece next, int multiplier) {
+        long request = latest.incrementAndGet();
+        deliver(request, null);
+        worker.execute(() -> think(request, grid, current, next, multiplier));
+    }
+
+    /**
+     * Abandon the hint being worked out, and hide the last one
+     */
+    public void cancel() {
+        deliver(latest.incrementAndGet(), null);
+    }
+
+    /**
+     * Abandon the hint being worked out and stop the background thread. The engine cannot be used again.
+     */
+    public void shutdown() {
+        latest.incrementAndGet();
+        worker.shutdown();
+    }
+
+    /**
+     * Work out a hint, unless a newer one has been asked for
+     * @param request    number of the request
+     * @param grid       board
+     * @param current    current piece
+     * @param next       next piece
+     * @param multiplier score multiplier in effect
+     */
+    private void think(long request, Grid grid, GamePiece current, GamePiece next, int multiplier) {
+        // Requests that were overtaken while queued are skipped without searching
+        if (latest.get() != request) return;
+        long deadline = System.nanoTime() + budget * 1_000_000;
+        BooleanSupplier overtaken = () -> latest.get() != request;
+        try {
+            Move move = quick.best(grid, current, next, multiplier, overtaken);
+            deliver(request, move);
+            if (move == null) return;
+            BooleanSupplier late = () -> latest.get() != request || System.nanoTime() - deadline > 0;
+            deliver(request, deep.best(grid, current, next, multiplier, late));
+        } catch (CancellationException e) {
+            logger.debug("Hint {} abandoned", request);
+        } catch (RuntimeException e) {
+            logger.error("Hint failed", e);
+        }
+    }
+
+    /**
+     * Hand a move to the listener, if it is still for the latest request when it gets there
+     * @param request number of the request
+     * @param move    move, or null
+     */
+    private void deliver(long request, Move move) {
+        executor.execute(() -> {
+            if (latest.get() == request) listener.hint(move);
+        });
+    }
+}
@@ -0,0 +1,163 @@
+package uk.ac.soton.comp1206.bot;
+
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GameArena;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * A Move is one way of playing a piece: which piece, how far to rotate it and which block to click, along with what it
+ * is expected to be worth. Moves are ranked by value, best first.
+ */
+public final class Move implements Comparable<Move> {
+    /**
+     * Piece as it will be placed, in its final rotation
+     */
+    private final GamePiece piece;
+    /**
+     * Whether the current and next piece are swapped first
+     */
+    private final boolean swap;
+    /**
+     * Number of clockwise rotations to make before placing
+     */
+    private final int rotations;
+    /**
+     * Column of the block to click, the pivot of the piece
+     */
+    private final int x;
+    /**
+     * Row of the block to click, the pivot of the piece
+     */
+    private final int y;
+    /**
+     * Number of lines the move clears
+     */
+    private final int lines;
+    /**
+     * Points the move scores straight away
+     */
+    private final int points;
+    /**
+     * Points plus the heuristic rating of the board left behind, after the best follow-up if the search looked ahead
+     */
+    private final double value;
+
+    /**
+     * Create a move
+     * @param piece     piece as it will be placed
+     * @param swap      whether the pieces are swapped first
+     * @param rotations number of clockwise rotations to make before placing
+     * @param x         column of the block to click
+     * @param y         row of the block to click
+     * @param lines     number of lines cleared
+     * @param points    points scored
+     * @param value     expected value of the move
+     */
+    public Move(GamePiece piece, boolean swap, int rotations, int x, int y, int lines, int points, double value) {
+        this.piece = piece;
+        this.swap = swap;
+        this.rotations = rotations;
+        this.x = x;
+        this.y = y;
+        this.lines = lines;
+        this.points = points;
+        this.value = value;
+    }
+
+    /**
+     * Make this move in a game, as a player would: swap, rotate, then click
+     * @param game game to play in, holding the pieces the move was found for
+     */
+    public void play(Game game) {
+        if (swap) game.swapCurrentPiece();
+        if (rotations != 0) game.rotateCurrentPiece(rotations);
+        game.blockClicked(x, y);
+    }
+
+    /**
+     * Make this move in a game held in an arena, the same way as in a Game
+     * @param worker worker changing the game
+     * @param game   slot of the game, holding the pieces the move was found for
+     */
+    public void play(GameArena.Worker worker, int game) {
+        if (swap) worker.swap(game);
+        if (rotations != 0) worker.rotate(game, rotations);
+        worker.place(game, x, y);
+    }
+
+    /**
+     * Get the piece as it will be placed
+     * @return piece in its final rotation
+     */
+    public GamePiece getPiece() {
+        return piece;
+    }
+
+    /**
+     * Check whether the current and next piece are swapped first
+     * @return true if the next piece is played
+     */
+    public boolean isSwap() {
+        return swap;
+    }
+
+    /**
+     * Get the number of clockwise rotations to make before placing
+     * @return number of rotations
+     */
+    public int getRotations() {
+        return rotations;
+    }
+
+    /**
+     * Get the column of the block to click
+     * @return column
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Get the row of the block to click
+     * @return row
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Get the number of lines the move clears
+     * @return number of lines
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Get the points the move scores straight away
+     * @return points
+     */
+    public int getPoints() {
+        return points;
+    }
+
+    /**
+     * Get the expected value of the move, its points plus the rating of the board left behind
+     * @return expected value
+     */
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public int compareTo(Move other) {
+        int order = Double.compare(other.value, value);
+        return order != 0 ? order : Integer.compare(other.points, points);
+    }
+
+    @Override
+    public String toString() {
+        return (swap ? "swap " : "") + piece + " r" + rotations + " at " + x + "," + y + " = " + points + " (" + value
+                + ")";
+    }
+}
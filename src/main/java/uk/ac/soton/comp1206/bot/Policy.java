@@ -0,0 +1,77 @@
+package uk.ac.soton.comp1206.bot;
+
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PlacementIndex;
+
+import java.util.SplittableRandom;
+
+/**
+ * A Policy decides which move an automated player makes next. Policies are called on the thread driving the game,
+ * between commands, so they can read the game's state directly.
+ */
+public interface Policy {
+    /**
+     * Choose the next move
+     * @param game game to play in
+     * @return the move to make, or null if there is no legal move
+     */
+    Move choose(Game game);
+
+    /**
+     * A policy that places the current piece at a random legal position and rotation, never swapping
+     * @param random source of randomness, only used by the calling thread
+     * @return the policy
+     */
+    static Policy random(SplittableRandom random) {
+        return game -> {
+            PlacementIndex placements = game.getCurrentPlacements();
+            int count = placements.count();
+            if (count == 0) return null;
+            int chosen = random.nextInt(count);
+            GamePiece current = game.currentPiece;
+            int cols = game.getCols();
+            for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                if (chosen >= placements.count(rotation)) {
+                    chosen -= placements.count(rotation);
+                    continue;
+                }
+                long[] legal = placements.getPlacements(rotation);
+                for (int word = 0; ; word++) {
+                    int bits = Long.bitCount(legal[word]);
+                    if (chosen >= bits) {
+                        chosen -= bits;
+                        continue;
+                    }
+                    long remaining = legal[word];
+                    for (; chosen > 0; chosen--) {
+                        remaining &= remaining - 1;
+                    }
+                    int cell = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                    int turns = (rotation - current.getRotation()) & (GamePiece.ROTATIONS - 1);
+                    return new Move(current.rotate(turns), false, turns, cell % cols, cell / cols, 0, 0, 0);
+                }
+            }
+            return null;
+        };
+    }
+
+    /**
+     * A policy that plays whichever placement of the current piece scores the most points straight away, never
+     * swapping and ignoring the board it leaves behind
+     * @return the policy
+     */
+    static Policy greedy() {
+        var engine = new SearchEngine(grid -> 0);
+        return game -> engine.best(game.getGrid(), game.currentPiece, null, game.getMultiplier());
+    }
+
+    /**
+     * A policy that plays the best move found by a search engine, swapping pieces when that is better
+     * @param engine engine to search with
+     * @return the policy
+     */
+    static Policy search(SearchEngine engine) {
+        return game -> engine.best(game.getGrid(), game.currentPiece, game.nextPiece, game.getMultiplier());
+    }
+}
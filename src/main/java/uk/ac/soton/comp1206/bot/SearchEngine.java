@@ -0,0 +1,530 @@
+package uk.ac.soton.comp1206.bot;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.Zobrist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Finds the best moves for a board and a pair of pieces. Every placement of every distinct rotation of the current
+ * piece is tried, and of the next piece too if given, since the pieces can be swapped. Each move is played out on a
+ * scratch copy of the board, lines are cleared and scored the same way the game scores them, and the board left behind
+ * is rated by a pluggable Heuristic. Searching two deep, the piece left over is then placed in its best position on
+ * that board too, and the move is rated by the board left after both.
+ *
+ * Looking ahead reaches the same board many times, since different moves can leave the same blocks filled once lines
+ * clear, and the board left by one move is looked ahead from again when that move is made. The value of each board
+ * with the piece left over is cached in a TranspositionTable, keyed by the Zobrist hash of the board, the piece and the
+ * multiplier. The table is shared by every thread of a search and kept between searches. Single boards are not cached,
+ * since rating one with a heuristic costs about as much as looking it up.
+ *
+ * With a BatchHeuristic and a board of up to 64 blocks, the boards left by a chunk of moves that place one piece are
+ * collected into a BoardBatch and rated together, which gives the same ratings faster. Looking ahead still rates boards
+ * one at a time, since each board has too few placements of the piece left over to be worth batching.
+ *
+ * The candidate moves are split into chunks that are evaluated in parallel on a ForkJoinPool. Small searches run
+ * straight away on the calling thread, and searches started from inside a pool run in that pool, so many games can be
+ * played at once without handing work between pools.
+ *
+ * A search can be given a stop condition, checked before each candidate move, so that it can be abandoned part way
+ * through within a few microseconds, for example once its result is no longer wanted.
+ */
+public class SearchEngine {
+    /**
+     * Number of candidate moves below which a chunk is evaluated without splitting it further
+     */
+    public static final int THRESHOLD = 64;
+    /**
+     * Deepest search, since only two pieces are known
+     */
+    public static final int MAX_DEPTH = 2;
+    /**
+     * Value of a board on which the piece left over fits nowhere, on top of its rating, standing for the life lost
+     */
+    public static final double NO_PLACEMENT = -1000;
+    /**
+     * Kind of number the depth searched is hashed as
+     */
+    private static final int DEPTH_KEY = 0;
+    /**
+     * Kind of number the multiplier is hashed as
+     */
+    private static final int MULTIPLIER_KEY = 1;
+    /**
+     * Pool to run large searches in
+     */
+    private final ForkJoinPool pool;
+    /**
+     * Heuristic rating the board left behind by each move
+     */
+    private final Heuristic heuristic;
+    /**
+     * Cache of values found looking ahead, or null for none
+     */
+    private final TranspositionTable table;
+    /**
+     * Number of pieces placed by each move searched, 1 or 2
+     */
+    private final int depth;
+
+    /**
+     * Create a search engine using the common pool
+     * @param heuristic heuristic to rate boards with
+     */
+    public SearchEngine(Heuristic heuristic) {
+        this(ForkJoinPool.commonPool(), heuristic);
+    }
+
+    /**
+     * Create a search engine placing one piece, which has no use for a transposition table
+     * @param pool      pool to run large searches in
+     * @param heuristic heuristic to rate boards with
+     */
+    public SearchEngine(ForkJoinPool pool, Heuristic heuristic) {
+        this(pool, heuristic, null, 1);
+    }
+
+    /**
+     * Create a search engine
+     * @param pool      pool to run large searches in
+     * @param heuristic heuristic to rate boards with
+     * @param table     cache of values found looking ahead, or null to work every one out afresh
+     * @param depth     1 to rate the board after each move, or 2 to also place the piece left over
+     */
+    public SearchEngine(ForkJoinPool pool, Heuristic heuristic, TranspositionTable table, int depth) {
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Depth must be from 1 to " + MAX_DEPTH + ": " + depth);
+        }
+        this.pool = pool;
+        this.heuristic = heuristic;
+        this.table = table;
+        this.depth = depth;
+    }
+
+    /**
+     * Get the heuristic used to rate boards
+     * @return the heuristic
+     */
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+
+    /**
+     * Get the cache of values found looking ahead, for example to report its hit rate
+     * @return the table, or null if there is none
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * Get the number of pieces placed by each move searched
+     * @return 1 or 2
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Find every legal move and rank them, best first. The grid is only read, but must not change during the search,
+     * so pass a copy of a grid that is in play.
+     * @param grid       board to play on
+     * @param current    current piece
+     * @param next       next piece, or null to only play the current piece
+     * @param multiplier score multiplier in effect
+     * @return legal moves, best first, empty if there are none
+     */
+    public List<Move> search(Grid grid, GamePiece current, GamePiece next, int multiplier) {
+        return search(grid, current, next, multiplier, null);
+    }
+
+    /**
+     * Find every legal move and rank them, best first, unless stopped first. The grid is only read, but must not
+     * change during the search, so pass a copy of a grid that is in play.
+     * @param grid       board to play on
+     * @param current    current piece
+     * @param next       next piece, or null to only play the current piece
+     * @param multiplier score multiplier in effect
+     * @param stop       condition checked before each candidate, from any thread of the search, that abandons the
+     *                   search once true, or null to always finish
+     * @return legal moves, best first, empty if there are none
+     * @throws CancellationException if the search was stopped before it finished
+     */
+    public List<Move> search(Grid grid, GamePiece current, GamePiece next, int multiplier, BooleanSupplier stop) {
+        var search = new Search(grid, current, next, multiplier, stop);
+        var task = new Evaluate(search, 0, search.candidates);
+        if (search.candidates <= THRESHOLD) {
+            task.compute();
+        } else if (ForkJoinTask.inForkJoinPool()) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+        if (search.stopped) {
+            throw new CancellationException("Search stopped");
+        }
+        var moves = new ArrayList<Move>();
+        for (Move move : search.results) {
+            if (move != null) moves.add(move);
+        }
+        moves.sort(null);
+        return moves;
+    }
+
+    /**
+     * Find the best move
+     * @param grid       board to play on, must not change during the search
+     * @param current    current piece
+     * @param next       next piece, or null to only play the current piece
+     * @param multiplier score multiplier in effect
+     * @return the best move, or null if no move is legal
+     */
+    public Move best(Grid grid, GamePiece current, GamePiece next, int multiplier) {
+        return best(grid, current, next, multiplier, null);
+    }
+
+    /**
+     * Find the best move, unless stopped first
+     * @param grid       board to play on, must not change during the search
+     * @param current    current piece
+     * @param next       next piece, or null to only play the current piece
+     * @param multiplier score multiplier in effect
+     * @param stop       condition checked before each candidate that abandons the search once true, or null
+     * @return the best move, or null if no move is legal
+     * @throws CancellationException if the search was stopped before it finished
+     */
+    public Move best(Grid grid, GamePiece current, GamePiece next, int multiplier, BooleanSupplier stop) {
+        List<Move> moves = search(grid, current, next, multiplier, stop);
+        return moves.isEmpty() ? null : moves.get(0);
+    }
+
+    /**
+     * Work out the value of a board with one piece still to play: the best points plus rating of placing it anywhere
+     * in any rotation, or the rating of the board as it is plus NO_PLACEMENT if it fits nowhere. Values are cached in
+     * the table, if there is one.
+     * @param grid       board to play on, not modified
+     * @param scratch    board of the same size to play moves out on
+     * @param piece      piece still to play
+     * @param multiplier score multiplier in effect
+     * @return value of the board
+     */
+    private double followUp(Grid grid, Grid scratch, GamePiece piece, int multiplier) {
+        long key = 0;
+        if (table != null) {
+            key = grid.getHash() ^ Zobrist.piece(0, piece.getPiece()) ^ Zobrist.number(MULTIPLIER_KEY, multiplier)
+                    ^ Zobrist.number(DEPTH_KEY, 1);
+            double value = table.probe(key);
+            if (!Double.isNaN(value)) return value;
+        }
+        double best = Double.NEGATIVE_INFINITY;
+        int cols = grid.getCols();
+        int rows = grid.getRows();
+        for (int turn = 0; turn < GamePiece.ROTATIONS; turn++) {
+            GamePiece rotated = piece.rotate(turn);
+            boolean seen = false;
+            for (int other = 0; other < turn; other++) {
+                seen |= piece.rotate(other).isSameShape(rotated);
+            }
+            if (seen) continue;
+            for (int posY = 0; posY + rotated.getHeight() <= rows; posY++) {
+                for (int posX = 0; posX + rotated.getWidth() <= cols; posX++) {
+                    if (!grid.canPlayPiece(rotated, posX, posY)) continue;
+                    scratch.copyFrom(grid);
+                    scratch.playPiece(rotated, posX, posY);
+                    int lines = scratch.clearFullLines();
+                    int points = lines * scratch.getClearedBlocks() * 10 * multiplier;
+                    best = Math.max(best, points + heuristic.evaluate(scratch));
+                }
+            }
+        }
+        if (best == Double.NEGATIVE_INFINITY) {
+            best = heuristic.evaluate(grid) + NO_PLACEMENT;
+        }
+        if (table != null) table.store(key, best);
+        return best;
+    }
+
+    /**
+     * The shared state of one search. Candidate c plays option c / cells clicked on block c % cells.
+     */
+    private class Search {
+        /**
+         * Board to play on
+         */
+        private final Grid grid;
+        /**
+         * Score multiplier in effect
+         */
+        private final int multiplier;
+        /**
+         * Each distinct piece and rotation to try
+         */
+        private final GamePiece[] options;
+        /**
+         * Whether each option needs a swap
+         */
+        private final boolean[] swaps;
+        /**
+         * Piece left over after playing each option, or null
+         */
+        private final GamePiece[] leftovers;
+        /**
+         * Rotations needed to reach each option
+         */
+        private final int[] rotations;
+        /**
+         * Number of blocks on the board
+         */
+        private final int cells;
+        /**
+         * Number of candidate moves
+         */
+        private final int candidates;
+        /**
+         * Whether boards are rated a batch at a time
+         */
+        private final boolean batched;
+        /**
+         * Result for each candidate, null if illegal
+         */
+        private final Move[] results;
+        /**
+         * Condition that abandons the search, or null
+         */
+        private final BooleanSupplier stop;
+        /**
+         * Whether the search was abandoned
+         */
+        private volatile boolean stopped = false;
+
+        /**
+         * Work out the options to try
+         * @param grid       board to play on
+         * @param current    current piece
+         * @param next       next piece, or null
+         * @param multiplier score multiplier in effect
+         * @param stop       condition that abandons the search, or null
+         */
+        private Search(Grid grid, GamePiece current, GamePiece next, int multiplier, BooleanSupplier stop) {
+            this.grid = grid;
+            this.multiplier = multiplier;
+            this.stop = stop;
+            var options = new GamePiece[2 * GamePiece.ROTATIONS];
+            var swaps = new boolean[options.length];
+            var rotations = new int[options.length];
+            int count = 0;
+            for (int piece = 0; piece < 2; piece++) {
+                GamePiece start = piece == 0 ? current : next;
+                if (start == null) continue;
+                int first = count;
+                for (int turn = 0; turn < GamePiece.ROTATIONS; turn++) {
+                    GamePiece rotated = start.rotate(turn);
+                    // Symmetrical pieces look the same in several rotations, only try each shape once
+                    boolean seen = false;
+                    for (int other = first; other < count; other++) {
+                        seen |= options[other].isSameShape(rotated);
+                    }
+                    if (seen) continue;
+                    options[count] = rotated;
+                    swaps[count] = piece == 1;
+                    rotations[count] = turn;
+                    count++;
+                }
+            }
+            this.options = Arrays.copyOf(options, count);
+            this.swaps = Arrays.copyOf(swaps, count);
+            this.leftovers = new GamePiece[count];
+            for (int option = 0; option < count; option++) {
+                leftovers[option] = this.swaps[option] ? current : next;
+            }
+            this.rotations = Arrays.copyOf(rotations, count);
+            this.cells = grid.getCols() * grid.getRows();
+            this.candidates = count * cells;
+            this.batched = heuristic instanceof BatchHeuristic && BoardBatch.fits(grid.getCols(), grid.getRows());
+            this.results = new Move[candidates];
+        }
+    }
+
+    /**
+     * Evaluates a range of candidates, splitting it in two while it is large
+     */
+    private class Evaluate extends RecursiveAction {
+        /**
+         * Tasks are serializable as a ForkJoinTask, though these are never serialized
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * Search the candidates belong to
+         */
+        private final Search search;
+        /**
+         * First candidate
+         */
+        private final int from;
+        /**
+         * One past the last candidate
+         */
+        private final int to;
+
+        /**
+         * Create a task for a range of candidates
+         * @param search search the candidates belong to
+         * @param from   first candidate
+         * @param to     one past the last candidate
+         */
+        private Evaluate(Search search, int from, int to) {
+            this.search = search;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Evaluate(search, from, middle), new Evaluate(search, middle, to));
+                return;
+            }
+            Grid grid = search.grid;
+            int cols = grid.getCols();
+            int rows = grid.getRows();
+            Grid scratch = null;
+            Grid ahead = null;
+            Pending pending = null;
+            for (int candidate = from; candidate < to; candidate++) {
+                if (search.stop != null && (search.stopped || search.stop.getAsBoolean())) {
+                    // The rest of the chunk would be thrown away
+                    search.stopped = true;
+                    return;
+                }
+                int option = candidate / search.cells;
+                int cell = candidate % search.cells;
+                int x = cell % cols;
+                int y = cell / cols;
+                GamePiece piece = search.options[option];
+                int posX = x - piece.getPivotX();
+                int posY = y - piece.getPivotY();
+                if (!grid.canPlayPiece(piece, posX, posY)) continue;
+
+                // Play the move out on a scratch board, scoring it like the game does
+                if (scratch == null) {
+                    scratch = new Grid(grid);
+                } else {
+                    scratch.copyFrom(grid);
+                }
+                scratch.playPiece(piece, posX, posY);
+                int lines = scratch.clearFullLines();
+                int points = lines * scratch.getClearedBlocks() * 10 * search.multiplier;
+                GamePiece leftover = search.leftovers[option];
+                double value;
+                if (depth == 1 || leftover == null) {
+                    if (search.batched) {
+                        // Rated with the rest of the chunk once it is done
+                        if (pending == null) pending = new Pending(cols, rows, to - candidate);
+                        pending.add(scratch, candidate, lines, points);
+                        continue;
+                    }
+                    value = points + heuristic.evaluate(scratch);
+                } else {
+                    if (ahead == null) ahead = new Grid(grid);
+                    // The game raises the multiplier after clearing lines, and resets it otherwise
+                    value = points + followUp(scratch, ahead, leftover, lines > 0 ? search.multiplier + 1 : 1);
+                }
+                record(candidate, lines, points, value);
+            }
+            if (pending != null) {
+                for (int board = 0, count = pending.rate((BatchHeuristic) heuristic); board < count; board++) {
+                    record(pending.candidates[board], pending.lines[board], pending.points[board],
+                            pending.points[board] + pending.values[board]);
+                }
+            }
+        }
+
+        /**
+         * Store the move for a candidate
+         * @param candidate candidate move
+         * @param lines     lines it clears
+         * @param points    points it scores
+         * @param value     value of the move
+         */
+        private void record(int candidate, int lines, int points, double value) {
+            int option = candidate / search.cells;
+            int cell = candidate % search.cells;
+            int cols = search.grid.getCols();
+            search.results[candidate] = new Move(search.options[option], search.swaps[option],
+                    search.rotations[option], cell % cols, cell / cols, lines, points, value);
+        }
+    }
+
+    /**
+     * Boards waiting to be rated together, with the move that left each one
+     */
+    private static class Pending {
+        /**
+         * Boards to rate
+         */
+        private final BoardBatch boards;
+        /**
+         * Candidate that left each board
+         */
+        private final int[] candidates;
+        /**
+         * Lines cleared on the way to each board
+         */
+        private final int[] lines;
+        /**
+         * Points scored on the way to each board
+         */
+        private final int[] points;
+        /**
+         * Rating of each board, once rated
+         */
+        private final double[] values;
+
+        /**
+         * Create an empty batch
+         * @param cols     number of columns of every board
+         * @param rows     number of rows of every board
+         * @param capacity largest number of boards
+         */
+        private Pending(int cols, int rows, int capacity) {
+            this.boards = new BoardBatch(cols, rows, capacity);
+            this.candidates = new int[capacity];
+            this.lines = new int[capacity];
+            this.points = new int[capacity];
+            this.values = new double[capacity];
+        }
+
+        /**
+         * Add a board to rate
+         * @param grid      board left by a move
+         * @param candidate candidate that left it
+         * @param lines     lines the move cleared
+         * @param points    points the move scored
+         */
+        private void add(Grid grid, int candidate, int lines, int points) {
+            int board = boards.add(grid);
+            this.candidates[board] = candidate;
+            this.lines[board] = lines;
+            this.points[board] = points;
+        }
+
+        /**
+         * Rate every board added
+         * @param heuristic heuristic to rate them with
+         * @return number of boards rated
+         */
+        private int rate(BatchHeuristic heuristic) {
+            heuristic.evaluate(boards, values);
+            return boards.size();
+        }
+    }
+}
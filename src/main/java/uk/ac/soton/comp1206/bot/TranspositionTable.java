@@ -0,0 +1,168 @@
+package uk.ac.soton.comp1206.bot;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size cache of position values, keyed by Zobrist hash, shared by every thread of a search and kept from one
+ * search to the next.
+ *
+ * The table is lock-free. Each entry is two longs, the value and a check word that is the exclusive or of the key with
+ * the value. Threads read and write the words without locking, so an entry can be torn by two threads writing it at
+ * once, but a torn entry fails the check and is treated as missing.
+ *
+ * The table is direct-mapped: each key has one entry, and a store always replaces whatever was there. Every value the
+ * search stores took the same depth of look-ahead to work out, so there is nothing to prefer one by, and the most
+ * recent positions are the ones most likely to come up again. The table counts its probes, hits and stores, so its hit
+ * rate can be reported.
+ */
+public class TranspositionTable {
+    /**
+     * Default number of entries, as a power of two
+     */
+    public static final int DEFAULT_BITS = 17;
+    /**
+     * Largest number of entries, as a power of two
+     */
+    public static final int MAX_BITS = 27;
+    /**
+     * Longs per entry: check, then value
+     */
+    private static final int WORDS = 2;
+    /**
+     * Access to single words of the table, which are read and written atomically without ordering
+     */
+    private static final VarHandle WORD = MethodHandles.arrayElementVarHandle(long[].class);
+    /**
+     * Entries, one after another
+     */
+    private final long[] entries;
+    /**
+     * Mask picking the entry from a key
+     */
+    private final int mask;
+    /**
+     * Number of lookups
+     */
+    private final LongAdder probes = new LongAdder();
+    /**
+     * Number of lookups that found their position
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * Number of values stored
+     */
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * Create a table with the default number of entries
+     */
+    public TranspositionTable() {
+        this(DEFAULT_BITS);
+    }
+
+    /**
+     * Create a table
+     * @param bits number of entries, as a power of two
+     */
+    public TranspositionTable(int bits) {
+        if (bits < 0 || bits > MAX_BITS) {
+            throw new IllegalArgumentException("Table size must be from 2^0 to 2^" + MAX_BITS + ": 2^" + bits);
+        }
+        this.entries = new long[WORDS << bits];
+        this.mask = (1 << bits) - 1;
+    }
+
+    /**
+     * Look up the value of a position
+     * @param key Zobrist hash of the position
+     * @return the value stored for the position, or NaN if there is none
+     */
+    public double probe(long key) {
+        probes.increment();
+        int entry = entry(key);
+        long check = (long) WORD.getOpaque(entries, entry);
+        long value = (long) WORD.getOpaque(entries, entry + 1);
+        // An empty entry reads as the value 0 for the key 0, which a Zobrist hash is as unlikely to be as any other
+        if ((check ^ value) == key) {
+            hits.increment();
+            return Double.longBitsToDouble(value);
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Store the value of a position, replacing whatever its entry held
+     * @param key   Zobrist hash of the position
+     * @param value value of the position
+     */
+    public void store(long key, double value) {
+        stores.increment();
+        long bits = Double.doubleToRawLongBits(value);
+        int entry = entry(key);
+        WORD.setOpaque(entries, entry, key ^ bits);
+        WORD.setOpaque(entries, entry + 1, bits);
+    }
+
+    /**
+     * Empty the table and reset its counts
+     */
+    public void clear() {
+        Arrays.fill(entries, 0);
+        probes.reset();
+        hits.reset();
+        stores.reset();
+    }
+
+    /**
+     * Get the number of entries the table can hold
+     * @return capacity
+     */
+    public int getCapacity() {
+        return entries.length / WORDS;
+    }
+
+    /**
+     * Get the number of lookups made
+     * @return probe count
+     */
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    /**
+     * Get the number of lookups that found their position
+     * @return hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of values stored
+     * @return store count
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * Get the share of lookups that found their position
+     * @return hit rate from 0 to 1, or 0 if nothing was looked up
+     */
+    public double getHitRate() {
+        long probes = getProbes();
+        return probes == 0 ? 0 : (double) getHits() / probes;
+    }
+
+    /**
+     * Find the entry for a key
+     * @param key Zobrist hash
+     * @return index of the entry's first word
+     */
+    private int entry(long key) {
+        return ((int) key & mask) * WORDS;
+    }
+}
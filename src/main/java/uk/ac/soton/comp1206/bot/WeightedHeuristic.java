@@ -0,0 +1,111 @@
+package uk.ac.soton.comp1206.bot;
+
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.Arrays;
+
+/**
+ * A Heuristic made of a weighted sum of board features, all worked out from the occupancy bitboard a row at a time:
+ * <ul>
+ *     <li>the number of filled blocks, since a fuller board leaves less room for the next piece</li>
+ *     <li>the number of changes between filled and empty along every row and column, which is high for ragged
+ *     boards</li>
+ *     <li>the number of holes, empty blocks shut in on every side, which no piece bigger than one block can fill</li>
+ * </ul>
+ * Boards of up to 64 blocks can also be rated a whole BoardBatch at a time, with the Vector API where it is available.
+ */
+public class WeightedHeuristic implements BatchHeuristic {
+    /**
+     * Number of features, and so of weights
+     */
+    public static final int FEATURES = 3;
+    /**
+     * Index of the filled block count
+     */
+    public static final int FILLED = 0;
+    /**
+     * Index of the filled to empty transition count
+     */
+    public static final int TRANSITIONS = 1;
+    /**
+     * Index of the hole count
+     */
+    public static final int HOLES = 2;
+    /**
+     * Weights that play reasonably well without tuning
+     */
+    private static final double[] DEFAULT_WEIGHTS = {-1.0, -0.5, -3.0};
+    /**
+     * Weight of each feature
+     */
+    private final double[] weights;
+
+    /**
+     * Create a heuristic with the default weights
+     */
+    public WeightedHeuristic() {
+        this(DEFAULT_WEIGHTS);
+    }
+
+    /**
+     * Create a heuristic with the given weights
+     * @param weights one weight per feature
+     */
+    public WeightedHeuristic(double... weights) {
+        if (weights.length != FEATURES) {
+            throw new IllegalArgumentException("Expected " + FEATURES + " weights, got " + weights.length);
+        }
+        this.weights = weights.clone();
+    }
+
+    /**
+     * Get the default weights
+     * @return a copy of the default weights
+     */
+    public static double[] getDefaultWeights() {
+        return DEFAULT_WEIGHTS.clone();
+    }
+
+    /**
+     * Get the weights of this heuristic
+     * @return a copy of the weights
+     */
+    public double[] getWeights() {
+        return weights.clone();
+    }
+
+    @Override
+    public double evaluate(Grid grid) {
+        long filled = 0, transitions = 0, holes = 0;
+        int cols = grid.getCols();
+        int rows = grid.getRows();
+        long full = cols == 64 ? -1L : (1L << cols) - 1;
+        long above = full;
+        long row = grid.rowBits(0);
+        for (int y = 0; y < rows; y++) {
+            long below = y + 1 < rows ? grid.rowBits(y + 1) : full;
+            filled += Long.bitCount(row);
+            // Neighbouring blocks in the row that differ
+            transitions += Long.bitCount((row ^ (row >>> 1)) & (full >>> 1));
+            // Blocks that differ from the one below
+            if (y + 1 < rows) transitions += Long.bitCount(row ^ below);
+            // The edges of the board count as filled
+            long left = (row << 1) | 1;
+            long right = (row >>> 1) | (1L << (cols - 1));
+            holes += Long.bitCount(~row & left & right & above & below & full);
+            above = row;
+            row = below;
+        }
+        return weights[FILLED] * filled + weights[TRANSITIONS] * transitions + weights[HOLES] * holes;
+    }
+
+    @Override
+    public void evaluate(BoardBatch batch, double[] values) {
+        batch.weigh(weights[FILLED], weights[TRANSITIONS], weights[HOLES], values);
+    }
+
+    @Override
+    public String toString() {
+        return "WeightedHeuristic" + Arrays.toString(weights);
+    }
+}
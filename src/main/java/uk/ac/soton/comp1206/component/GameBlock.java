@@ -60,6 +60,10 @@ public class GameBlock extends Canvas {
      * To hover or not to hover
      */
     private boolean hover = false;
+    /**
+     * Whether the block is part of the hinted move
+     */
+    private boolean hint = false;
 
     /**
      * Create a new single Game Block
@@ -120,6 +124,19 @@ public class GameBlock extends Canvas {
             gc.setFill(Color.rgb(204, 204, 204, 0.4));
             gc.fillRect(0, 0, width, height);
         }
+        // If hint is true, then outline the block
+        if (this.hint) {
+            var gc = getGraphicsContext2D();
+
+            gc.save();
+            gc.setFill(Color.rgb(255, 255, 255, 0.2));
+            gc.fillRect(0, 0, width, height);
+            gc.setStroke(Color.rgb(255, 255, 255, 0.9));
+            gc.setLineWidth(3);
+            gc.setLineDashes(6, 4);
+            gc.strokeRect(4, 4, width - 8, height - 8);
+            gc.restore();
+        }
     }
 
     /**
@@ -184,6 +201,16 @@ public class GameBlock extends Canvas {
         paint();
     }
 
+    /**
+     * Hint effect
+     * @param hint true if the block is part of the hinted move
+     */
+    public void hint(boolean hint) {
+        if (this.hint == hint) return;
+        this.hint = hint;
+        paint();
+    }
+
     /**
      * Fade line when cleared
      */
@@ -9,7 +9,7 @@ import uk.ac.soton.comp1206.event.BlockClickedListener;
 import uk.ac.soton.comp1206.event.RightClickedListener;
 import uk.ac.soton.comp1206.game.Grid;
 
-import java.util.HashSet;
+import java.util.BitSet;
 
 /**
  * A GameBoard is a visual component to represent the visual GameBoard.
@@ -33,6 +33,10 @@ public class GameBoard extends GridPane {
      * The grid this GameBoard represents
      */
     final Grid grid;
+    /**
+     * Properties of the grid blocks, for binding
+     */
+    private final GridProperties properties;
     /**
      * The visual width of the board - has to be specified due to being a Canvas
      */
@@ -50,6 +54,10 @@ public class GameBoard extends GridPane {
      */
     protected RightClickedListener rightClickedListener;
     private GameBlock hover;
+    /**
+     * Blocks of the hinted move, bit (y * cols + x) for the block at x and y
+     */
+    private final BitSet hint = new BitSet();
     /**
      * The listener to call when a specific block is clicked
      */
@@ -67,6 +75,7 @@ public class GameBoard extends GridPane {
         this.width = width;
         this.height = height;
         this.grid = grid;
+        this.properties = new GridProperties(grid);
 
         // Build the GameBoard
         build();
@@ -86,11 +95,28 @@ public class GameBoard extends GridPane {
         this.width = width;
         this.height = height;
         this.grid = new Grid(cols, rows);
+        this.properties = new GridProperties(grid);
 
         // Build the GameBoard
         build();
     }
 
+    /**
+     * Get the number of columns in the board
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows in the board
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
     /**
      * Get a specific block from the GameBoard, specified by its row and column
      * @param x column
@@ -139,7 +165,7 @@ public class GameBoard extends GridPane {
         blocks[x][y] = block;
 
         // Link the GameBlock component to the corresponding value in the Grid
-        block.bind(grid.getGridProperty(x, y));
+        block.bind(properties.getProperty(x, y));
 
         // Add a mouse click handler to the block to trigger GameBoard blockClicked method
         block.setOnMouseClicked((e) -> blockClicked(e, block));
@@ -165,12 +191,34 @@ public class GameBoard extends GridPane {
 
     /**
      * Fadeout effect
-     * @param blockCoordinates block coordinates to clear
+     * @param cells blocks to clear, bit (y * cols + x) for the block at x and y
+     */
+    public void fadeOut(BitSet cells) {
+        for (int cell = cells.nextSetBit(0); cell >= 0; cell = cells.nextSetBit(cell + 1)) {
+            getBlock(cell % cols, cell / cols).fadeOut();
+        }
+    }
+
+    /**
+     * Outline the blocks a hinted move would fill, replacing any hint shown before
+     * @param cells blocks to outline, bit (y * cols + x) for the block at x and y
      */
-    public void fadeOut(HashSet<GameBlockCoordinate> blockCoordinates) {
-        for (GameBlockCoordinate coordinates : blockCoordinates) {
-            getBlock(coordinates.getX(), coordinates.getY()).fadeOut();
+    public void showHint(BitSet cells) {
+        for (int cell = hint.nextSetBit(0); cell >= 0; cell = hint.nextSetBit(cell + 1)) {
+            if (!cells.get(cell)) getBlock(cell % cols, cell / cols).hint(false);
         }
+        for (int cell = cells.nextSetBit(0); cell >= 0; cell = cells.nextSetBit(cell + 1)) {
+            getBlock(cell % cols, cell / cols).hint(true);
+        }
+        hint.clear();
+        hint.or(cells);
+    }
+
+    /**
+     * Remove the hint, if one is shown
+     */
+    public void clearHint() {
+        showHint(new BitSet());
     }
 
     /**
@@ -0,0 +1,61 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.application.Platform;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.GridChange;
+
+/**
+ * Adapts a Grid to a property per block, so that GameBlocks can be bound to it. The properties are kept in sync by
+ * listening to the grid, so the grid itself stays free of properties. Each change set from the grid is applied in one
+ * go, and change sets made away from the JavaFX thread are passed over to it with a single hand-off.
+ */
+public class GridProperties {
+    /**
+     * One property for every block in the grid
+     */
+    private final SimpleIntegerProperty[][] properties;
+
+    /**
+     * Create the properties for a grid and start following its changes
+     * @param grid grid to adapt
+     */
+    public GridProperties(Grid grid) {
+        properties = new SimpleIntegerProperty[grid.getCols()][grid.getRows()];
+
+        // Start every property at the current value of its block
+        for (var y = 0; y < grid.getRows(); y++) {
+            for (var x = 0; x < grid.getCols(); x++) {
+                properties[x][y] = new SimpleIntegerProperty(grid.get(x, y));
+            }
+        }
+        grid.setOnGridChanged(change -> {
+            if (Platform.isFxApplicationThread()) {
+                apply(change);
+            } else {
+                Platform.runLater(() -> apply(change));
+            }
+        });
+    }
+
+    /**
+     * Bring the properties of every block in a change set up to date, so each block is only repainted once per change
+     * @param change blocks that changed and their new values
+     */
+    private void apply(GridChange change) {
+        for (int cell = change.nextCell(0); cell >= 0; cell = change.nextCell(cell + 1)) {
+            properties[change.getX(cell)][change.getY(cell)].set(change.getValue(cell));
+        }
+    }
+
+    /**
+     * Get the Integer property for a given row and column index. Can be used for binding.
+     * @param x column
+     * @param y row
+     * @return the IntegerProperty at the given x and y
+     */
+    public IntegerProperty getProperty(int x, int y) {
+        return properties[x][y];
+    }
+}
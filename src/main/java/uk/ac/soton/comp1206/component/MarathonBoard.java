@@ -0,0 +1,110 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.application.Platform;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.MarathonGame;
+
+/**
+ * A GameBoard showing a window onto the board of a marathon game, which has no edges of its own. The board holds an
+ * internal grid the size of the window, and copies the part of the marathon board under the window into it whenever
+ * it is refreshed or scrolled.
+ */
+public class MarathonBoard extends GameBoard {
+    private static final Logger logger = LogManager.getLogger(MarathonBoard.class);
+    /**
+     * Game whose board is shown
+     */
+    private final MarathonGame game;
+    /**
+     * Column of the marathon board under the left of the window
+     */
+    private int left;
+    /**
+     * Row of the marathon board under the top of the window
+     */
+    private int top;
+
+    /**
+     * Create a new MarathonBoard, with a window centred on the middle of the marathon board
+     * @param game   marathon game
+     * @param cols   number of columns of the window
+     * @param rows   number of rows of the window
+     * @param width  the visual width
+     * @param height the visual height
+     */
+    public MarathonBoard(MarathonGame game, int cols, int rows, double width, double height) {
+        super(cols, rows, width, height);
+        this.game = game;
+        this.left = -cols / 2;
+        this.top = -rows / 2;
+    }
+
+    /**
+     * Get the column of the marathon board under the left of the window
+     * @return column
+     */
+    public int getLeft() {
+        return left;
+    }
+
+    /**
+     * Get the row of the marathon board under the top of the window
+     * @return row
+     */
+    public int getTop() {
+        return top;
+    }
+
+    /**
+     * Move the window over the marathon board
+     * @param dx columns to move right, negative to move left
+     * @param dy rows to move down, negative to move up
+     */
+    public void scroll(int dx, int dy) {
+        left += dx;
+        top += dy;
+        logger.info("Window moved to {}, {}", left, top);
+        refresh();
+    }
+
+    /**
+     * Copy the part of the marathon board under the window into the grid shown. The board is read by a command on the
+     * game's inbox, like any other change to the game, and the copy is shown on the JavaFX thread once it is taken.
+     */
+    public void refresh() {
+        int left = this.left;
+        int top = this.top;
+        game.getInbox().submit(() -> {
+            var board = game.getBoard();
+            var values = new int[cols * rows];
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < cols; x++) {
+                    values[y * cols + x] = board.get(left + x, top + y);
+                }
+            }
+            Platform.runLater(() -> show(left, top, values));
+        });
+    }
+
+    /**
+     * Show a copy of part of the marathon board
+     * @param left   column the copy starts at
+     * @param top    row the copy starts at
+     * @param values value of every block copied, indexed by y * cols + x
+     */
+    private void show(int left, int top, int[] values) {
+        // The window has moved since, and a copy of where it is now is on its way
+        if (left != this.left || top != this.top) return;
+        grid.begin();
+        try {
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < cols; x++) {
+                    grid.set(x, y, values[y * cols + x]);
+                }
+            }
+        } finally {
+            grid.commit();
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package uk.ac.soton.comp1206.component;
 
 import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PieceSet;
+
+import java.util.BitSet;
 
 /**
- * Used to display an upcoming piece in a 3x3 grid
+ * Used to display an upcoming piece, in a grid big enough for any piece of the active piece set
  */
 public class PieceBoard extends GameBoard {
 
@@ -13,16 +16,32 @@ public class PieceBoard extends GameBoard {
      * @param height height of board
      */
     public PieceBoard(double width, double height) {
-        super(3, 3, width, height);
+        super(PieceSet.getActive().getMaxSize(), PieceSet.getActive().getMaxSize(), width, height);
         build();
     }
 
     /**
-     * Display the piece
+     * Display the piece, centred
      * @param gamePiece piece to be displayed
      */
     public void showPiece(GamePiece gamePiece) {
         this.grid.clean();
-        grid.playPiece(gamePiece, 0, 0);
+        int offsetX = (grid.getCols() - gamePiece.getWidth()) / 2;
+        int offsetY = (grid.getRows() - gamePiece.getHeight()) / 2;
+        grid.playPiece(gamePiece, offsetX, offsetY);
+    }
+
+    /**
+     * Outline the blocks of the piece shown, or stop outlining them
+     * @param hint true to outline the piece
+     */
+    public void hintPiece(boolean hint) {
+        var cells = new BitSet();
+        for (int y = 0; hint && y < grid.getRows(); y++) {
+            for (int x = 0; x < grid.getCols(); x++) {
+                if (grid.get(x, y) != 0) cells.set(y * grid.getCols() + x);
+            }
+        }
+        showHint(cells);
     }
 }
@@ -0,0 +1,295 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.GameStats;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.BitSet;
+
+/**
+ * Something that happened in a Game, published on its EventBus. Events are immutable, so they can be handed to any
+ * thread. Each type of event is a nested class, which is what subscribers subscribe to.
+ */
+public abstract class GameEvent {
+
+    /**
+     * The current or next piece changed
+     */
+    public static final class PieceChanged extends GameEvent {
+        /**
+         * Current and next piece
+         */
+        private final GamePiece current, next;
+
+        /**
+         * Create the event
+         * @param current current piece
+         * @param next    next piece
+         */
+        public PieceChanged(GamePiece current, GamePiece next) {
+            this.current = current;
+            this.next = next;
+        }
+
+        /**
+         * Get the current piece
+         * @return current piece
+         */
+        public GamePiece getCurrent() {
+            return current;
+        }
+
+        /**
+         * Get the next piece
+         * @return next piece
+         */
+        public GamePiece getNext() {
+            return next;
+        }
+    }
+
+    /**
+     * The board, either piece or the multiplier changed, so the best move may be different. Published once per batch
+     * of commands, with a copy of everything needed to search for a move as it was at the end of the batch.
+     */
+    public static final class PositionChanged extends GameEvent {
+        /**
+         * Copy of the board
+         */
+        private final Grid grid;
+        /**
+         * Current and next piece
+         */
+        private final GamePiece current, next;
+        /**
+         * Score multiplier in effect
+         */
+        private final int multiplier;
+
+        /**
+         * Create the event
+         * @param grid       copy of the board, owned by the event from now on
+         * @param current    current piece
+         * @param next       next piece
+         * @param multiplier score multiplier in effect
+         */
+        public PositionChanged(Grid grid, GamePiece current, GamePiece next, int multiplier) {
+            this.grid = grid;
+            this.current = current;
+            this.next = next;
+            this.multiplier = multiplier;
+        }
+
+        /**
+         * Get the copy of the board. The grid is shared between subscribers and must not be modified.
+         * @return board
+         */
+        public Grid getGrid() {
+            return grid;
+        }
+
+        /**
+         * Get the current piece
+         * @return current piece
+         */
+        public GamePiece getCurrent() {
+            return current;
+        }
+
+        /**
+         * Get the next piece
+         * @return next piece
+         */
+        public GamePiece getNext() {
+            return next;
+        }
+
+        /**
+         * Get the score multiplier
+         * @return multiplier
+         */
+        public int getMultiplier() {
+            return multiplier;
+        }
+    }
+
+    /**
+     * Lines were cleared
+     */
+    public static final class LineCleared extends GameEvent {
+        /**
+         * Cleared blocks, bit (y * cols + x) set for the block at x and y
+         */
+        private final BitSet cells;
+        /**
+         * Number of lines cleared
+         */
+        private final int lines;
+
+        /**
+         * Create the event
+         * @param cells cleared blocks, owned by the event from now on
+         * @param lines number of lines cleared
+         */
+        public LineCleared(BitSet cells, int lines) {
+            this.cells = cells;
+            this.lines = lines;
+        }
+
+        /**
+         * Get the cleared blocks. The set is shared between subscribers and must not be modified.
+         * @return cleared blocks, bit (y * cols + x) set for the block at x and y
+         */
+        public BitSet getCells() {
+            return cells;
+        }
+
+        /**
+         * Get the number of lines cleared
+         * @return number of lines
+         */
+        public int getLines() {
+            return lines;
+        }
+    }
+
+    /**
+     * Neither the current piece nor the next piece can be placed anywhere, in any rotation
+     */
+    public static final class NoLegalPlacement extends GameEvent {
+        /**
+         * Current and next piece
+         */
+        private final GamePiece current, next;
+
+        /**
+         * Create the event
+         * @param current current piece
+         * @param next    next piece
+         */
+        public NoLegalPlacement(GamePiece current, GamePiece next) {
+            this.current = current;
+            this.next = next;
+        }
+
+        /**
+         * Get the current piece
+         * @return current piece
+         */
+        public GamePiece getCurrent() {
+            return current;
+        }
+
+        /**
+         * Get the next piece
+         * @return next piece
+         */
+        public GamePiece getNext() {
+            return next;
+        }
+    }
+
+    /**
+     * The countdown started again
+     */
+    public static final class GameLoop extends GameEvent {
+        /**
+         * Length of the countdown
+         */
+        private final int delay;
+
+        /**
+         * Create the event
+         * @param delay length of the countdown, in milliseconds
+         */
+        public GameLoop(int delay) {
+            this.delay = delay;
+        }
+
+        /**
+         * Get the length of the countdown
+         * @return delay in milliseconds
+         */
+        public int getDelay() {
+            return delay;
+        }
+    }
+
+    /**
+     * The game ended
+     */
+    public static final class GameOver extends GameEvent {
+        /**
+         * Stats at the end
+         */
+        private final GameStats stats;
+
+        /**
+         * Create the event
+         * @param stats stats at the end
+         */
+        public GameOver(GameStats stats) {
+            this.stats = stats;
+        }
+
+        /**
+         * Get the stats at the end of the game
+         * @return final stats
+         */
+        public GameStats getStats() {
+            return stats;
+        }
+    }
+
+    /**
+     * A sound should be played
+     */
+    public static final class Sound extends GameEvent {
+        /**
+         * Name of the sound
+         */
+        private final String sound;
+
+        /**
+         * Create the event
+         * @param sound name of the sound
+         */
+        public Sound(String sound) {
+            this.sound = sound;
+        }
+
+        /**
+         * Get the name of the sound
+         * @return sound name
+         */
+        public String getSound() {
+            return sound;
+        }
+    }
+
+    /**
+     * The score, level, lives or multiplier changed
+     */
+    public static final class StatsChanged extends GameEvent {
+        /**
+         * New stats
+         */
+        private final GameStats stats;
+
+        /**
+         * Create the event
+         * @param stats new stats
+         */
+        public StatsChanged(GameStats stats) {
+            this.stats = stats;
+        }
+
+        /**
+         * Get the new stats
+         * @return stats
+         */
+        public GameStats getStats() {
+            return stats;
+        }
+    }
+}
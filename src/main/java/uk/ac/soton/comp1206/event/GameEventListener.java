@@ -0,0 +1,13 @@
+package uk.ac.soton.comp1206.event;
+
+/**
+ * The Game Event listener is subscribed to an EventBus to receive one type of GameEvent
+ * @param <E> type of event
+ */
+public interface GameEventListener<E extends GameEvent> {
+    /**
+     * Handle an event
+     * @param event the event
+     */
+    void handle(E event);
+}
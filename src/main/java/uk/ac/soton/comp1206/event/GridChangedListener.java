@@ -0,0 +1,15 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GridChange;
+
+/**
+ * The Grid Changed listener is used to follow changes to the blocks of a Grid, for example to keep a display in sync.
+ * It is called once for every batch of changes rather than once per block.
+ */
+public interface GridChangedListener {
+    /**
+     * Handle a batch of blocks in the grid changing value
+     * @param change the blocks that changed and their new values
+     */
+    void gridChanged(GridChange change);
+}
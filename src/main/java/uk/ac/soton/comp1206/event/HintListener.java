@@ -0,0 +1,14 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.bot.Move;
+
+/**
+ * The Hint listener is told the best move found so far for the latest position
+ */
+public interface HintListener {
+    /**
+     * Handle a new hint
+     * @param move the best move so far, or null if none is known
+     */
+    void hint(Move move);
+}
@@ -1,16 +1,15 @@
 package uk.ac.soton.comp1206.event;
 
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
-
-import java.util.HashSet;
+import java.util.BitSet;
 
 /**
- * The Line Cleared listener takes a Set of GameBlockCoordinates and add it to the Game class to trigger when lines are cleared.
+ * The Line Cleared listener takes the set of cleared blocks and add it to the Game class to trigger when lines are
+ * cleared. Bit (y * cols + x) of the set is the block at column x and row y.
  */
 public interface LineClearedListener {
     /**
      * Handle a line cleared event
-     * @param lineCleared the line that was cleared
+     * @param lineCleared the blocks that were cleared
      */
-    void lineCleared(HashSet<GameBlockCoordinate> lineCleared);
+    void lineCleared(BitSet lineCleared);
 }
@@ -0,0 +1,12 @@
+package uk.ac.soton.comp1206.event;
+
+/**
+ * The Sound listener is used to play the sound effects the game asks for
+ */
+public interface SoundListener {
+    /**
+     * Handle a sound effect
+     * @param sound name of the sound file
+     */
+    void playSound(String sound);
+}
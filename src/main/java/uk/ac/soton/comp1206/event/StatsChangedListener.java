@@ -0,0 +1,14 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GameStats;
+
+/**
+ * The Stats Changed listener is used to follow the score, level, lives and multiplier of a game
+ */
+public interface StatsChangedListener {
+    /**
+     * Handle a change to any of the game stats
+     * @param stats snapshot of the new stats
+     */
+    void statsChanged(GameStats stats);
+}
@@ -0,0 +1,769 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.GameEvent;
+import uk.ac.soton.comp1206.event.GameEventListener;
+import uk.ac.soton.comp1206.event.GameLoopListener;
+import uk.ac.soton.comp1206.event.GameOverListener;
+import uk.ac.soton.comp1206.event.LineClearedListener;
+import uk.ac.soton.comp1206.event.NextPieceListener;
+import uk.ac.soton.comp1206.event.SoundListener;
+import uk.ac.soton.comp1206.event.StatsChangedListener;
+import uk.ac.soton.comp1206.replay.ReplayFormat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The rules of TetrECS that do not depend on the board: the pieces, scoring, the multiplier, levels, lives, the shop
+ * and the countdown. Each kind of game extends it with the board it is played on, which decides where a piece can go
+ * and which lines it clears.
+ *
+ * The game does not depend on JavaFX, so it can run without a display. Everything it does is reported through its
+ * listeners, which the UI uses to update properties, animate and play sounds.
+ *
+ * Player actions and the timer can arrive from different threads, so the public actions only submit commands to the
+ * game's inbox, which runs them one at a time. The other methods are the bodies of those commands and should only be
+ * called from inside one. Everything that happens is published on the game's EventBus, where any number of subscribers
+ * choose which thread they hear about it on. The single listeners set with the setOn methods are subscribers called
+ * from whichever thread is running the commands.
+ *
+ * All randomness comes from one PieceGenerator with a known seed, so a game can be recorded as its seed and the actions
+ * made in it, and replayed exactly.
+ */
+public abstract class BaseGame {
+    private static final Logger logger = LogManager.getLogger(BaseGame.class);
+    /**
+     * Lives a game starts with
+     */
+    public static final int LIVES = 3;
+    /**
+     * Current game piece and next game piece
+     */
+    public volatile GamePiece currentPiece, nextPiece;
+    /**
+     * Initial score value
+     */
+    protected int score = 0;
+    /**
+     * Initial level value
+     */
+    protected int level = 0;
+    /**
+     * Initial lives value
+     */
+    protected int lives = LIVES;
+    /**
+     * Initial multiplier value
+     */
+    protected int multiplier = 1;
+    /**
+     * Total number of lines cleared
+     */
+    protected int lines = 0;
+    /**
+     * Saved high scores
+     */
+    public ArrayList<Map.Entry<String, Integer>> scores = new ArrayList<>();
+    /**
+     * Source of every piece in the game
+     */
+    protected final PieceGenerator generator;
+    /**
+     * Timing wheel driving the countdown
+     */
+    protected final TimingWheel timer;
+    /**
+     * Game loop, calls the gameLoop method when the countdown ends
+     */
+    protected final TimingWheel.Timeout loop;
+    /**
+     * Whether the timer has been stopped for good
+     */
+    private volatile boolean stopped = false;
+    /**
+     * Whether the game has ended
+     */
+    protected boolean over = false;
+    /**
+     * What happens when no piece can be placed anywhere
+     */
+    private NoPlacementPenalty penalty = NoPlacementPenalty.WAIT;
+    /**
+     * Inbox through which every change to the game state is made
+     */
+    protected final CommandInbox inbox = new CommandInbox(this::publish);
+    /**
+     * Whether the stats have changed since they were last published
+     */
+    private boolean statsDirty = false;
+    /**
+     * Whether the board, the pieces or the multiplier have changed since the position was last published
+     */
+    private boolean positionDirty = false;
+    /**
+     * Last published snapshot of the stats
+     */
+    private volatile GameStats stats = new GameStats(score, level, lives, multiplier);
+    /**
+     * Bus everything that happens in the game is published on
+     */
+    protected final EventBus events = new EventBus();
+    /**
+     * Subscriptions of the listeners set with the setOn methods, one per type of event
+     */
+    private final Map<Class<?>, EventBus.Subscription<?>> listeners = new HashMap<>();
+    /**
+     * Used to track level up
+     */
+    int oldLevel = 0;
+
+    /**
+     * Create a new game counting down on the given timing wheel, whose pieces are dealt by the given generator
+     * @param timer     timing wheel to run the countdown on
+     * @param generator generator to deal pieces, not shared with any other game
+     */
+    protected BaseGame(TimingWheel timer, PieceGenerator generator) {
+        this.generator = generator;
+        this.timer = timer;
+        this.loop = timer.newTimeout(this::expireTimer);
+    }
+
+    /**
+     * Start the game
+     */
+    public void start() {
+        logger.info("Starting game");
+        inbox.submit(() -> {
+            record(ReplayFormat.START, 0, 0);
+            initializeGame();
+            restartTimer();
+            gameLoopListener();
+        });
+    }
+
+    /**
+     * Listens for the next piece
+     * @param listener next piece
+     */
+    public void setNextPieceListener(NextPieceListener listener) {
+        setListener(GameEvent.PieceChanged.class,
+                listener == null ? null : event -> listener.nextPiece(event.getCurrent()));
+    }
+
+    /**
+     * Listens for line cleared
+     * @param listener cleared line
+     */
+    public void setOnLineCleared(LineClearedListener listener) {
+        setListener(GameEvent.LineCleared.class,
+                listener == null ? null : event -> listener.lineCleared(event.getCells()));
+    }
+
+    /**
+     * Listens for countdown end
+     */
+    public void gameLoopListener() {
+        if (events.hasSubscribers(GameEvent.GameLoop.class)) {
+            events.publish(new GameEvent.GameLoop(getTimerDelay()));
+        }
+    }
+
+    /**
+     * Handle events when countdown ends
+     * @param listener listens for timer end
+     */
+    public void setOnGameLoop(GameLoopListener listener) {
+        setListener(GameEvent.GameLoop.class, listener == null ? null : event -> listener.gameLoop(event.getDelay()));
+    }
+
+    /**
+     * Handle events when game ends
+     * @param listener listens for game over
+     */
+    public void setOnGameOver(GameOverListener listener) {
+        setListener(GameEvent.GameOver.class, listener == null ? null : event -> listener.gameOver());
+    }
+
+    /**
+     * Handle sounds the game wants to play
+     * @param listener listens for sounds
+     */
+    public void setOnSound(SoundListener listener) {
+        setListener(GameEvent.Sound.class, listener == null ? null : event -> listener.playSound(event.getSound()));
+    }
+
+    /**
+     * Handle changes to the score, level, lives or multiplier. The listener is told about each published snapshot.
+     * @param listener listens for stats changes
+     */
+    public void setOnStatsChanged(StatsChangedListener listener) {
+        setListener(GameEvent.StatsChanged.class,
+                listener == null ? null : event -> listener.statsChanged(event.getStats()));
+    }
+
+    /**
+     * Get the bus everything that happens in the game is published on
+     * @return event bus
+     */
+    public EventBus getEvents() {
+        return events;
+    }
+
+    /**
+     * Replace the single listener for a type of event, called on the thread running the commands
+     * @param type     type of event
+     * @param listener new listener, or null to remove it
+     * @param <E>      type of event
+     */
+    private <E extends GameEvent> void setListener(Class<E> type, GameEventListener<E> listener) {
+        synchronized (listeners) {
+            EventBus.Subscription<?> old = listeners.remove(type);
+            if (old != null) old.cancel();
+            if (listener != null) listeners.put(type, events.subscribe(type, listener));
+        }
+    }
+
+    /**
+     * Get the last published snapshot of the score, level, lives and multiplier. Safe to call from any thread, and
+     * only replaced when the stats actually change.
+     * @return stats snapshot
+     */
+    public GameStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Calculate time allowed for each round
+     * @return time for each round
+     */
+    public int getTimerDelay() {
+        return delayFor(level);
+    }
+
+    /**
+     * Get the points for clearing lines, the same on every kind of board and in a GameArena
+     * @param lines      number of lines cleared
+     * @param blocks     number of blocks cleared
+     * @param multiplier multiplier before the lines were cleared
+     * @return points scored
+     */
+    static int pointsFor(int lines, int blocks, int multiplier) {
+        return lines * blocks * 10 * multiplier;
+    }
+
+    /**
+     * Get the level reached with a score
+     * @param score score
+     * @return level
+     */
+    static int levelFor(int score) {
+        return Math.floorDiv(score, 1000);
+    }
+
+    /**
+     * Get the time allowed for each round at a level
+     * @param level level
+     * @return time in milliseconds
+     */
+    static int delayFor(int level) {
+        return Math.max(12000 - 500 * level, 2500);
+    }
+
+    /**
+     * Apply a penalty once for neither piece fitting anywhere, the step checkPlacements repeats for as long as
+     * nothing fits
+     * @param penalty  what to do
+     * @param loseLife runs the countdown out, losing a life
+     * @param end      ends the game
+     * @return true if the penalty was applied and whether anything fits should be checked again, false to wait
+     */
+    static boolean penalise(NoPlacementPenalty penalty, Runnable loseLife, Runnable end) {
+        switch (penalty) {
+            case LOSE_LIFE -> loseLife.run();
+            case END_GAME -> end.run();
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Initialize a new game and set up anything that needs to be done at the start
+     */
+    public void initializeGame() {
+        logger.info("initializing game");
+        this.nextPiece = spawnPiece();
+        nextPieceDealt();
+        nextPiece();
+    }
+
+    /**
+     * Handle what should happen when a particular block is clicked
+     * @param blockX the column of the block that was clicked
+     * @param blockY the row of the block that was clicked
+     */
+    public void blockClicked(int blockX, int blockY) {
+        // The clicked block is where the pivot of the piece goes
+        inbox.submit(() -> {
+            record(ReplayFormat.PLACE, blockX, blockY);
+            placePiece(blockX - currentPiece.getPivotX(), blockY - currentPiece.getPivotY());
+        });
+    }
+
+    /**
+     * Place the current piece with the top left of its bounding box at the given position, if it fits, and call
+     * piecePlaced once it is on the board
+     * @param x column
+     * @param y row
+     */
+    protected abstract void placePiece(int x, int y);
+
+    /**
+     * Carry on after the current piece has been put on the board: clear lines, deal the next piece and restart the
+     * countdown
+     */
+    protected void piecePlaced() {
+        playSound("place.wav");
+        afterPiece();
+        nextPiece();
+        restartTimer();
+        gameLoopListener();
+        logger.info("Timer reset");
+        checkPlacements();
+    }
+
+    /**
+     * Handle the clearance of lines, passing how many there were to linesCleared
+     */
+    public abstract void afterPiece();
+
+    /**
+     * Score the lines a piece cleared and move the multiplier and level on, or reset the multiplier if it cleared
+     * none. The rules every kind of board is scored by.
+     * @param linesCleared number of lines cleared
+     * @param blocks       number of blocks cleared
+     */
+    protected void linesCleared(int linesCleared, int blocks) {
+        if (linesCleared > 0) {
+            lines += linesCleared;
+            score(linesCleared, blocks);
+            // Multiplier increase by 1 if the next piece also clears lines
+            multiplier++;
+            // Sets the level
+            level = levelFor(score);
+            // Plays sound when level up
+            levelSounds(level);
+            statsChanged();
+        } else {
+            // Multiplier resets to 1 if no lines cleared
+            multiplierReset();
+        }
+    }
+
+    /**
+     * Calculate the score
+     * @param lines  number of lines cleared
+     * @param blocks number of grid blocks cleared
+     */
+    public void score(int lines, int blocks) {
+        score += pointsFor(lines, blocks, multiplier);
+        statsChanged();
+    }
+
+    /**
+     * Create a randomly generated piece
+     * @return GamePiece
+     */
+    public GamePiece spawnPiece() {
+        return generator.next();
+    }
+
+    /**
+     * Replace the current piece with a new piece
+     */
+    public void nextPiece() {
+        currentPiece = nextPiece;
+        nextPiece = spawnPiece();
+        nextPieceDealt();
+        pieceChanged();
+        logger.info("Current piece is now: " + currentPiece);
+    }
+
+    /**
+     * Called once the next piece has moved up to be the current piece and a new next piece has been dealt, and once
+     * when the first piece is dealt at the start
+     */
+    protected void nextPieceDealt() {
+    }
+
+    /**
+     * Rotate the current piece
+     * @param times number of rotations specified by user
+     */
+    public void rotateCurrentPiece(int times) {
+        inbox.submit(() -> {
+            record(ReplayFormat.ROTATE, times, 0);
+            currentPiece = currentPiece.rotate(times);
+            pieceChanged();
+        });
+    }
+
+    /**
+     * Swap between current and next piece
+     */
+    public void swapCurrentPiece() {
+        inbox.submit(() -> {
+            record(ReplayFormat.SWAP, 0, 0);
+            GamePiece gamePiece = currentPiece;
+            currentPiece = nextPiece;
+            nextPiece = gamePiece;
+            piecesSwapped();
+            pieceChanged();
+            logger.info("Pieces swapped");
+            checkPlacements();
+        });
+    }
+
+    /**
+     * Called once the current and next pieces have been swapped
+     */
+    protected void piecesSwapped() {
+    }
+
+    /**
+     * Stop the timer for good
+     */
+    public void stopTimer() {
+        stopped = true;
+        loop.cancel();
+    }
+
+    /**
+     * Start the countdown again from the full delay, unless the timer has been stopped
+     */
+    protected void restartTimer() {
+        if (!stopped) {
+            loop.schedule(getTimerDelay());
+        }
+    }
+
+    /**
+     * Get the seed of the random number generator, which together with the actions made decides the whole game
+     * @return seed
+     */
+    public long getSeed() {
+        return generator.getSeed();
+    }
+
+    /**
+     * Get the generator dealing the game's pieces
+     * @return piece generator
+     */
+    public PieceGenerator getGenerator() {
+        return generator;
+    }
+
+    /**
+     * Record an action, for games that can be recorded. Does nothing by default.
+     * @param type record type from ReplayFormat
+     * @param a    first argument
+     * @param b    second argument
+     */
+    protected void record(int type, int a, int b) {
+    }
+
+    /**
+     * Get the time left on the countdown
+     * @return time in milliseconds, or 0 if the countdown is not running
+     */
+    public long getTimeRemaining() {
+        return loop.getRemaining();
+    }
+
+    /**
+     * Play sound when player level up
+     * @param currentLevel current level
+     */
+    public void levelSounds(int currentLevel) {
+        if (currentLevel != oldLevel) {
+            playSound("level.wav");
+            oldLevel = currentLevel;
+            logger.info("Level up");
+        }
+    }
+
+    /**
+     * Skip current piece with 100 points
+     */
+    public void skipPiece() {
+        inbox.submit(() -> {
+            record(ReplayFormat.SKIP, 0, 0);
+            if (score >= 50) {
+                score -= 50;
+                statsChanged();
+                nextPiece();
+                playSound("transition.wav");
+                logger.info("Skipped piece");
+                checkPlacements();
+            } else {
+                playSound("fail.wav");
+                logger.info("Not enough points");
+            }
+        });
+    }
+
+    /**
+     * Buy one life with 300 points
+     */
+    public void addLives() {
+        inbox.submit(() -> {
+            record(ReplayFormat.LIFE, 0, 0);
+            if (score >= 100) {
+                score -= 100;
+                lives++;
+                statsChanged();
+                playSound("lifegain.wav");
+                logger.info("Added one life");
+            } else {
+                playSound("fail.wav");
+                logger.info("Not enough points");
+            }
+        });
+    }
+
+    /**
+     * Clear the whole grid with 500 points
+     */
+    public void clearAll() {
+        inbox.submit(() -> {
+            record(ReplayFormat.CLEAR, 0, 0);
+            if (score >= 200) {
+                score -= 200;
+                cleanBoard();
+                multiplier++;
+                statsChanged();
+                playSound("explode.wav");
+                logger.info("Board cleaned");
+            } else {
+                playSound("fail.wav");
+                logger.info("Not enough points");
+            }
+        });
+    }
+
+    /**
+     * Empty every block of the board
+     */
+    protected abstract void cleanBoard();
+
+    /**
+     * Remove a life when timer ends
+     */
+    public void livesReset() {
+        if (lives > 0) {
+            lives--;
+            statsChanged();
+            playSound("lifelose.wav");
+            logger.info("Life lost");
+        } else {
+            logger.info("Game over");
+            over = true;
+            events.publish(new GameEvent.GameOver(new GameStats(score, level, lives, multiplier)));
+        }
+    }
+
+    /**
+     * Reset multiplier to 1
+     */
+    public void multiplierReset() {
+        if (multiplier > 1) {
+            logger.info("Multiplier set to 1");
+            multiplier = 1;
+            statsChanged();
+        }
+    }
+
+    /**
+     * End the countdown now, as if it had run out
+     */
+    public void expireTimer() {
+        inbox.submit(() -> {
+            record(ReplayFormat.TIMER, 0, 0);
+            gameLoop();
+            checkPlacements();
+        });
+    }
+
+    /**
+     * Loop events when timer end
+     */
+    public void gameLoop() {
+        livesReset();
+        multiplierReset();
+        nextPiece();
+        gameLoopListener();
+        restartTimer();
+    }
+
+    /**
+     * Get the current score
+     * @return score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Get the current level
+     * @return level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Get the number of lives left
+     * @return lives
+     */
+    public int getLives() {
+        return lives;
+    }
+
+    /**
+     * Get the total number of lines cleared
+     * @return lines
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Get the current score multiplier
+     * @return multiplier
+     */
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Tell the subscribers which sound to play
+     * @param sound sound name
+     */
+    protected void playSound(String sound) {
+        if (events.hasSubscribers(GameEvent.Sound.class)) {
+            events.publish(new GameEvent.Sound(sound));
+        }
+    }
+
+    /**
+     * Check whether the current piece, in its current rotation, can be placed by clicking the given block
+     * @param x column of the block
+     * @param y row of the block
+     * @return true if the placement is legal
+     */
+    public abstract boolean canPlaceCurrentPiece(int x, int y);
+
+    /**
+     * Check whether either the current piece or the next piece can be placed anywhere, in any rotation
+     * @return true if there is at least one legal placement
+     */
+    public abstract boolean hasLegalPlacement();
+
+    /**
+     * Set what happens as soon as neither the current piece nor the next piece can be placed anywhere. A replay
+     * records the outcome rather than the setting, so it must be played back by a game that WAITs, or the penalty
+     * would be applied twice.
+     * @param penalty what to do, WAIT by default
+     */
+    public void setNoPlacementPenalty(NoPlacementPenalty penalty) {
+        inbox.submit(() -> this.penalty = penalty);
+    }
+
+    /**
+     * Check that the current or the next piece can still be placed, and if not, publish it and apply the penalty.
+     * Only looks at the number of legal placements each index keeps, so it is cheap enough to run after every move.
+     */
+    protected void checkPlacements() {
+        while (!over && !hasLegalPlacement()) {
+            logger.info("No legal placement for " + currentPiece + " or " + nextPiece);
+            if (events.hasSubscribers(GameEvent.NoLegalPlacement.class)) {
+                events.publish(new GameEvent.NoLegalPlacement(currentPiece, nextPiece));
+            }
+            boolean applied = penalise(penalty, () -> {
+                // Recorded as the countdown running out, which is exactly what happens. A replaying game must WAIT,
+                // or it would lose this life itself as well as playing the recorded TIMER
+                record(ReplayFormat.TIMER, 0, 0);
+                gameLoop();
+            }, () -> {
+                logger.info("Game over");
+                over = true;
+                events.publish(new GameEvent.GameOver(new GameStats(score, level, lives, multiplier)));
+            });
+            if (!applied) return;
+        }
+    }
+
+    /**
+     * Get the inbox the game state is changed through, for example to measure it
+     * @return command inbox
+     */
+    public CommandInbox getInbox() {
+        return inbox;
+    }
+
+    /**
+     * Tell the subscribers that the current or next piece changed
+     */
+    protected void pieceChanged() {
+        positionDirty = true;
+        if (events.hasSubscribers(GameEvent.PieceChanged.class)) {
+            events.publish(new GameEvent.PieceChanged(currentPiece, nextPiece));
+        }
+    }
+
+    /**
+     * Note that the score, level, lives or multiplier changed. They are published once the current batch of commands
+     * has been handled.
+     */
+    protected void statsChanged() {
+        statsDirty = true;
+        // The board only changes along with the pieces or the stats
+        positionDirty = true;
+    }
+
+    /**
+     * Publish the position again once the batch of commands running is done, even if nothing changed, for a
+     * subscriber that has only just subscribed
+     */
+    public void refreshPosition() {
+        inbox.submit(() -> positionDirty = true);
+    }
+
+    /**
+     * Publish the position once a batch of commands has changed the board, the pieces or the multiplier. Does nothing
+     * by default.
+     */
+    protected void publishPosition() {
+    }
+
+    /**
+     * Publish the state changed by the last batch of commands
+     */
+    private void publish() {
+        if (statsDirty) {
+            statsDirty = false;
+            stats = new GameStats(score, level, lives, multiplier);
+            if (events.hasSubscribers(GameEvent.StatsChanged.class)) {
+                events.publish(new GameEvent.StatsChanged(stats));
+            }
+        }
+        if (positionDirty) {
+            positionDirty = false;
+            publishPosition();
+        }
+    }
+}
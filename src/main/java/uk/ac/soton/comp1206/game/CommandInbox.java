@@ -0,0 +1,171 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free inbox of commands that are run one at a time, in the order they were submitted. Any number of threads can
+ * submit commands. Whichever submitter finds the inbox idle runs commands until it is empty again, so the commands of
+ * one inbox never run at the same time even though no thread is dedicated to them. This makes the inbox the single
+ * writer of the state its commands touch.
+ *
+ * Commands submitted while the inbox is busy are batched into the running drain. The end of each drain is reported,
+ * and the inbox counts commands and batches so that input handling can be measured.
+ */
+public class CommandInbox {
+    private static final Logger logger = LogManager.getLogger(CommandInbox.class);
+    /**
+     * Most recently submitted node, swapped in by producers
+     */
+    private final AtomicReference<Node> head;
+    /**
+     * Number of submissions not yet accounted for by the drain, non-zero while draining
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    /**
+     * Called each time the inbox has been emptied, before another thread can start draining
+     */
+    private final Runnable onDrained;
+    /**
+     * Last node taken by the consumer, only touched while draining
+     */
+    private Node tail;
+    /**
+     * Total number of commands run
+     */
+    private volatile long commands = 0;
+    /**
+     * Total number of drains
+     */
+    private volatile long batches = 0;
+    /**
+     * Largest number of commands run in one drain
+     */
+    private volatile int largestBatch = 0;
+
+    /**
+     * Create an empty inbox
+     * @param onDrained task to run each time the inbox has been emptied
+     */
+    public CommandInbox(Runnable onDrained) {
+        this.onDrained = onDrained;
+        tail = new Node(null);
+        head = new AtomicReference<>(tail);
+    }
+
+    /**
+     * Submit a command. If the inbox is idle, the command runs straight away on this thread along with anything
+     * submitted meanwhile. Otherwise it is left for the thread already draining.
+     * @param command command to run
+     */
+    public void submit(Runnable command) {
+        var node = new Node(command);
+        head.getAndSet(node).setNext(node);
+        if (pending.getAndIncrement() == 0) {
+            drain();
+        }
+    }
+
+    /**
+     * Run commands until the inbox is empty and no more submissions are pending
+     */
+    private void drain() {
+        int missed = 1;
+        while (true) {
+            int batch = 0;
+            Node next;
+            while ((next = tail.next) != null) {
+                tail = next;
+                Runnable command = next.command;
+                next.command = null;
+                batch++;
+                try {
+                    command.run();
+                } catch (RuntimeException e) {
+                    logger.error("Command failed", e);
+                }
+            }
+            if (batch > 0) {
+                commands += batch;
+                batches++;
+                if (batch > largestBatch) largestBatch = batch;
+                // Still the only writer here, so the state is consistent
+                onDrained.run();
+            }
+            missed = pending.addAndGet(-missed);
+            if (missed == 0) break;
+        }
+    }
+
+    /**
+     * Get the total number of commands run
+     * @return command count
+     */
+    public long getCommands() {
+        return commands;
+    }
+
+    /**
+     * Get the total number of drains, each handling one batch of commands
+     * @return batch count
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * Get the largest number of commands run in a single drain
+     * @return largest batch size
+     */
+    public int getLargestBatch() {
+        return largestBatch;
+    }
+
+    /**
+     * A link in the inbox, pointing at the node submitted after it
+     */
+    private static class Node {
+        /**
+         * Access to the link to the next node, for publishing it without a full fence
+         */
+        private static final VarHandle NEXT;
+        /**
+         * Node submitted after this one, null until it is linked in
+         */
+        private volatile Node next;
+        /**
+         * Command held by this node, cleared once taken
+         */
+        private Runnable command;
+
+        static {
+            try {
+                NEXT = MethodHandles.lookup().findVarHandle(Node.class, "next", Node.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        /**
+         * Create a node
+         * @param command command to hold
+         */
+        private Node(Runnable command) {
+            this.command = command;
+        }
+
+        /**
+         * Link the next node in. Only the submitter that swapped this node out of the head does so, so an ordered
+         * store is enough, as with AtomicReference.lazySet.
+         * @param node next node
+         */
+        private void setNext(Node node) {
+            NEXT.setRelease(this, node);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.GameEvent;
+import uk.ac.soton.comp1206.event.GameEventListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A typed event bus with any number of subscribers per type of GameEvent. Subscribing to GameEvent itself receives
+ * every event.
+ *
+ * Each subscriber chooses where its events are delivered. Without an executor they are delivered synchronously on the
+ * publishing thread, which suits cheap listeners only. With an executor, such as Platform::runLater for the JavaFX
+ * thread or a thread pool, publishing just queues the event, so a slow subscriber never holds up the game. A
+ * subscriber that falls behind gets everything that queued up meanwhile in one hand-off to its executor, in order, or
+ * only the newest event if it subscribed for the latest state only.
+ */
+public class EventBus {
+    private static final Logger logger = LogManager.getLogger(EventBus.class);
+    /**
+     * Subscribers for each type of event
+     */
+    private final ConcurrentHashMap<Class<?>, CopyOnWriteArrayList<Subscription<?>>> subscribers =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Subscribe to a type of event, delivered synchronously on the publishing thread
+     * @param type     type of event
+     * @param listener listener to call
+     * @param <E>      type of event
+     * @return the subscription
+     */
+    public <E extends GameEvent> Subscription<E> subscribe(Class<E> type, GameEventListener<? super E> listener) {
+        return add(new Subscription<>(this, type, listener, null, false));
+    }
+
+    /**
+     * Subscribe to a type of event, delivered in order through an executor
+     * @param type     type of event
+     * @param listener listener to call
+     * @param executor executor to deliver on
+     * @param <E>      type of event
+     * @return the subscription
+     */
+    public <E extends GameEvent> Subscription<E> subscribe(Class<E> type, GameEventListener<? super E> listener,
+                                                           Executor executor) {
+        return add(new Subscription<>(this, type, listener, executor, false));
+    }
+
+    /**
+     * Subscribe to a type of event, delivered through an executor, skipping any events overtaken by a newer one while
+     * waiting for delivery. Suits listeners that only show the latest state.
+     * @param type     type of event
+     * @param listener listener to call
+     * @param executor executor to deliver on
+     * @param <E>      type of event
+     * @return the subscription
+     */
+    public <E extends GameEvent> Subscription<E> subscribeLatest(Class<E> type, GameEventListener<? super E> listener,
+                                                                 Executor executor) {
+        return add(new Subscription<>(this, type, listener, executor, true));
+    }
+
+    /**
+     * Check whether anything is subscribed to a type of event, so that creating an event nobody wants can be skipped
+     * @param type type of event
+     * @return true if there is a subscriber
+     */
+    public boolean hasSubscribers(Class<? extends GameEvent> type) {
+        return !list(type).isEmpty() || !list(GameEvent.class).isEmpty();
+    }
+
+    /**
+     * Publish an event to every subscriber of its type
+     * @param event the event
+     */
+    public void publish(GameEvent event) {
+        for (Subscription<?> subscription : list(event.getClass())) {
+            subscription.offer(event);
+        }
+        for (Subscription<?> subscription : list(GameEvent.class)) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Get the subscribers of a type of event
+     * @param type type of event
+     * @return subscribers, possibly empty
+     */
+    private CopyOnWriteArrayList<Subscription<?>> list(Class<?> type) {
+        return subscribers.computeIfAbsent(type, key -> new CopyOnWriteArrayList<>());
+    }
+
+    /**
+     * Add a subscription
+     * @param subscription subscription
+     * @param <E>          type of event
+     * @return the subscription
+     */
+    private <E extends GameEvent> Subscription<E> add(Subscription<E> subscription) {
+        list(subscription.type).add(subscription);
+        return subscription;
+    }
+
+    /**
+     * One subscriber to one type of event, with its own queue of events waiting for delivery
+     * @param <E> type of event
+     */
+    public static class Subscription<E extends GameEvent> {
+        /**
+         * Bus subscribed to
+         */
+        private final EventBus bus;
+        /**
+         * Type of event
+         */
+        private final Class<E> type;
+        /**
+         * Listener to call
+         */
+        private final GameEventListener<? super E> listener;
+        /**
+         * Executor to deliver on, or null for the publishing thread
+         */
+        private final Executor executor;
+        /**
+         * Whether only the newest waiting event is delivered
+         */
+        private final boolean latest;
+        /**
+         * Events waiting for delivery
+         */
+        private final ConcurrentLinkedQueue<E> queue = new ConcurrentLinkedQueue<>();
+        /**
+         * Number of events queued but not yet accounted for by a delivery, non-zero while one is scheduled
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+        /**
+         * Whether the subscription has been cancelled
+         */
+        private volatile boolean cancelled = false;
+        /**
+         * Number of events delivered
+         */
+        private volatile long delivered = 0;
+        /**
+         * Number of hand-offs to the executor
+         */
+        private volatile long batches = 0;
+
+        /**
+         * Create a subscription, should only be called by the bus
+         * @param bus      bus subscribed to
+         * @param type     type of event
+         * @param listener listener to call
+         * @param executor executor to deliver on, or null for the publishing thread
+         * @param latest   whether only the newest waiting event is delivered
+         */
+        private Subscription(EventBus bus, Class<E> type, GameEventListener<? super E> listener, Executor executor,
+                             boolean latest) {
+            this.bus = bus;
+            this.type = type;
+            this.listener = listener;
+            this.executor = executor;
+            this.latest = latest;
+        }
+
+        /**
+         * Stop receiving events. Events still waiting are dropped.
+         */
+        public void cancel() {
+            cancelled = true;
+            bus.list(type).remove(this);
+            queue.clear();
+        }
+
+        /**
+         * Get the number of events delivered so far
+         * @return number of events
+         */
+        public long getDelivered() {
+            return delivered;
+        }
+
+        /**
+         * Get the number of hand-offs to the executor so far. Fewer than the events delivered means the subscriber
+         * fell behind and events were batched.
+         * @return number of hand-offs
+         */
+        public long getBatches() {
+            return batches;
+        }
+
+        /**
+         * Take an event for delivery
+         * @param event the event, of this subscription's type
+         */
+        private void offer(GameEvent event) {
+            E typed = type.cast(event);
+            if (executor == null) {
+                deliver(typed);
+                return;
+            }
+            queue.offer(typed);
+            if (pending.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * Deliver everything waiting, on the executor
+         */
+        private void drain() {
+            int missed = 1;
+            while (true) {
+                batches++;
+                E event;
+                if (latest) {
+                    E newest = null;
+                    while ((event = queue.poll()) != null) {
+                        newest = event;
+                    }
+                    if (newest != null) deliver(newest);
+                } else {
+                    while ((event = queue.poll()) != null) {
+                        deliver(event);
+                    }
+                }
+                missed = pending.addAndGet(-missed);
+                if (missed == 0) break;
+            }
+        }
+
+        /**
+         * Call the listener
+         * @param event the event
+         */
+        private void deliver(E event) {
+            if (cancelled) return;
+            delivered++;
+            try {
+                listener.handle(event);
+            } catch (RuntimeException e) {
+                logger.error("Event listener failed", e);
+            }
+        }
+    }
+}
@@ -1,33 +1,19 @@
 package uk.ac.soton.comp1206.game;
 
-import javafx.application.Platform;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
-import javafx.util.Pair;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
-import uk.ac.soton.comp1206.event.GameLoopListener;
-import uk.ac.soton.comp1206.event.GameOverListener;
-import uk.ac.soton.comp1206.event.LineClearedListener;
-import uk.ac.soton.comp1206.event.NextPieceListener;
-import uk.ac.soton.comp1206.ui.Multimedia;
+import uk.ac.soton.comp1206.event.GameEvent;
+import uk.ac.soton.comp1206.replay.ReplayWriter;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Random;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 /**
  * The Game class handles the main logic, state and properties of the TetrECS game. Methods to manipulate the game state
  * and to handle actions made by the player should take place inside this class.
+ *
+ * The game is played on a Grid of fixed size. The legal placements of the current and next pieces are kept in a
+ * PlacementIndex each, so whether any move is left is known straight away after every move. The whole state of the
+ * game can be captured and restored, and every action recorded to a replay.
  */
-public class Game {
-    private static final Logger logger = LogManager.getLogger(Game.class);
+public class Game extends BaseGame {
     /**
      * Number of rows
      */
@@ -41,57 +27,13 @@ public class Game {
      */
     protected final Grid grid;
     /**
-     * Current game piece and next game piece
+     * Legal placements of the current piece and of the next piece
      */
-    public GamePiece currentPiece, nextPiece;
+    protected PlacementIndex currentPlacements, nextPlacements;
     /**
-     * Initial score value
+     * Replay being recorded, if any
      */
-    public IntegerProperty score = new SimpleIntegerProperty(0);
-    /**
-     * Initial level value
-     */
-    public IntegerProperty level = new SimpleIntegerProperty(0);
-    /**
-     * Initial lives value
-     */
-    public IntegerProperty lives = new SimpleIntegerProperty(3);
-    /**
-     * Initial multiplier value
-     */
-    public IntegerProperty multiplier = new SimpleIntegerProperty(1);
-    /**
-     * Saved high scores
-     */
-    public ArrayList<Pair<String, Integer>> scores = new ArrayList<>();
-    /**
-     * Game loop
-     */
-    protected ScheduledFuture<?> loop;
-    /**
-     * Calls a gameLoop method
-     */
-    protected ScheduledExecutorService timer;
-    /**
-     * Next piece listener
-     */
-    protected NextPieceListener nextPieceListener = null;
-    /**
-     * Line cleared listener
-     */
-    protected LineClearedListener lineClearedListener = null;
-    /**
-     * Game loop listener
-     */
-    protected GameLoopListener gameLoopListener = null;
-    /**
-     * Game over listener
-     */
-    protected GameOverListener gameOverListener = null;
-    /**
-     * Used to track level up
-     */
-    int oldLevel = 0;
+    private ReplayWriter recorder = null;
 
     /**
      * Create a new game with the specified rows and columns. Creates a corresponding grid model.
@@ -99,214 +41,107 @@ public class Game {
      * @param rows number of rows
      */
     public Game(int cols, int rows) {
-        this.cols = cols;
-        this.rows = rows;
-
-        // Create a new grid model to represent the game state
-        this.grid = new Grid(cols, rows);
-        timer = Executors.newSingleThreadScheduledExecutor();
+        this(cols, rows, TimingWheel.shared());
     }
 
     /**
-     * Start the game
+     * Create a new game with the specified rows and columns, counting down on the given timing wheel
+     * @param cols  number of columns
+     * @param rows  number of rows
+     * @param timer timing wheel to run the countdown on
      */
-    public void start() {
-        logger.info("Starting game");
-        initializeGame();
-        loop = timer.schedule(this::gameLoop, getTimerDelay(), TimeUnit.MILLISECONDS);
-        gameLoopListener();
+    public Game(int cols, int rows, TimingWheel timer) {
+        this(cols, rows, timer, new Random().nextLong());
     }
 
     /**
-     * Listens for the next piece
-     * @param listener next piece
+     * Create a new game with the specified rows and columns, counting down on the given timing wheel, whose random
+     * choices are made from the given seed
+     * @param cols  number of columns
+     * @param rows  number of rows
+     * @param timer timing wheel to run the countdown on
+     * @param seed  seed for the random number generator
      */
-    public void setNextPieceListener(NextPieceListener listener) {
-        nextPieceListener = listener;
+    public Game(int cols, int rows, TimingWheel timer, long seed) {
+        this(cols, rows, timer, PieceGenerator.uniform(seed));
     }
 
     /**
-     * Listens for line cleared
-     * @param listener cleared line
+     * Create a new game with the specified rows and columns, counting down on the given timing wheel, whose pieces are
+     * dealt by the given generator
+     * @param cols      number of columns
+     * @param rows      number of rows
+     * @param timer     timing wheel to run the countdown on
+     * @param generator generator to deal pieces, not shared with any other game
      */
-    public void setOnLineCleared(LineClearedListener listener) {
-        lineClearedListener = listener;
-    }
-
-    /**
-     * Listens for countdown end
-     */
-    public void gameLoopListener() {
-        if (gameLoopListener != null) {
-            gameLoopListener.gameLoop(getTimerDelay());
-        }
-    }
-
-    /**
-     * Handle events when countdown ends
-     * @param listener listens for timer end
-     */
-    public void setOnGameLoop(GameLoopListener listener) {
-        gameLoopListener = listener;
-    }
-
-    /**
-     * Handle events when game ends
-     * @param listener listens for game over
-     */
-    public void setOnGameOver(GameOverListener listener) {
-        gameOverListener = listener;
-    }
-
-    /**
-     * Calculate time allowed for each round
-     * @return time for each round
-     */
-    public int getTimerDelay() {
-        return Math.max(12000 - 500 * level.get(), 2500);
-    }
+    public Game(int cols, int rows, TimingWheel timer, PieceGenerator generator) {
+        super(timer, generator);
+        this.cols = cols;
+        this.rows = rows;
 
-    /**
-     * Initialize a new game and set up anything that needs to be done at the start
-     */
-    public void initializeGame() {
-        logger.info("initializing game");
-        this.nextPiece = spawnPiece();
-        nextPiece();
+        // Create a new grid model to represent the game state
+        this.grid = new Grid(cols, rows);
+        this.currentPlacements = new PlacementIndex(grid);
+        this.nextPlacements = new PlacementIndex(grid);
     }
 
     /**
-     * Handle what should happen when a particular block is clicked
-     * @param gameBlock the block that was clicked
-     */
-    public void blockClicked(GameBlock gameBlock) {
-        // Get the position of this block
-        int x = gameBlock.getX() - 1;
-        int y = gameBlock.getY() - 1;
-
-        // Place the current piece
-        if (grid.playPiece(currentPiece, x, y)) {
-            Multimedia.playAudio("place.wav");
-            afterPiece();
-            nextPiece();
-            loop.cancel(false);
-            loop = timer.schedule(this::gameLoop, getTimerDelay(), TimeUnit.MILLISECONDS);
-            gameLoopListener();
-            logger.info("Timer reset");
-        } else {
-            Multimedia.playAudio("fail.wav");
+     * Place the current piece with the top left of its bounding box at the given position, if it fits
+     * @param x column
+     * @param y row
+     */
+    @Override
+    protected void placePiece(int x, int y) {
+        // Placing the piece and clearing lines are shown as one change
+        grid.begin();
+        try {
+            if (grid.playPiece(currentPiece, x, y)) {
+                currentPlacements.filled(currentPiece, x, y);
+                nextPlacements.filled(currentPiece, x, y);
+                piecePlaced();
+            } else {
+                playSound("fail.wav");
+            }
+        } finally {
+            grid.commit();
         }
     }
 
     /**
      * Handle the clearance of lines
      */
+    @Override
     public void afterPiece() {
-        var clear = new HashSet<IntegerProperty>();
-        var cleared = new HashSet<GameBlockCoordinate>();
-
-        int linesCleared = 0;
+        // Only the lines the piece touched can have become full
+        int linesCleared = grid.clearFullLines();
+        linesCleared(linesCleared, grid.getClearedBlocks());
 
-        // Check for full horizontal lines (rows) --
-        for (int x = 0; x < cols; x++) {
-            int counter = 0;
-            for (int y = 0; y < rows; y++) {
-                if (grid.get(x, y) == 0) break;
-                counter++;
-            }
-            if (counter == rows) {
-                linesCleared++;
-                for (int y = 0; y < rows; y++) {
-                    clear.add(grid.getGridProperty(x, y));
-                    cleared.add(new GameBlockCoordinate(x, y));
-                }
-            }
-        }
-        // Check for full vertical lines (columns) ||
-        for (int y = 0; y < rows; y++) {
-            int counter = 0;
-            for (int x = 0; x < cols; x++) {
-                if (grid.get(x, y) == 0) break;
-                counter++;
-            }
-            if (counter == cols) {
-                linesCleared++;
-                for (int x = 0; x < this.cols; x++) {
-                    clear.add(grid.getGridProperty(x, y));
-                    cleared.add(new GameBlockCoordinate(x, y));
-                }
-            }
-        }
-        // Check if lines cleared
         if (linesCleared > 0) {
-            score(linesCleared, clear.size());
-            // Multiplier increase by 1 if the next piece also clears lines
-            multiplier.set(multiplier.add(1).get());
-            // Sets the level
-            level.set(Math.floorDiv(score.get(), 1000));
-            // Plays sound when level up
-            levelSounds(level.get());
-            if (lineClearedListener != null) {
-                lineClearedListener.lineCleared(cleared);
-            }
-            // Clear block
-            for (IntegerProperty block : clear) {
-                block.set(0);
+            currentPlacements.emptied(grid.getClearedWords());
+            nextPlacements.emptied(grid.getClearedWords());
+            if (events.hasSubscribers(GameEvent.LineCleared.class)) {
+                events.publish(new GameEvent.LineCleared(grid.getClearedCells(), linesCleared));
             }
-        } else {
-            // Multiplier resets to 1 if no lines cleared
-            multiplierReset();
         }
     }
 
-    /**
-     * Calculate the score
-     * @param lines  number of lines cleared
-     * @param blocks number of grid blocks cleared
-     */
-    public void score(int lines, int blocks) {
-        int multiplayer = multiplier.get();
-        score.set(score.add(lines * blocks * 10 * multiplayer).get());
+    @Override
+    protected void nextPieceDealt() {
+        // The next piece's placements carry over, only the new next piece needs indexing
+        swapPlacements();
+        nextPlacements.rebuild(nextPiece);
     }
 
-    /**
-     * Create a randomly generated piece
-     * @return GamePiece
-     */
-    public GamePiece spawnPiece() {
-        Random piece = new Random();
-        Random rotations = new Random();
-        return GamePiece.createPiece(piece.nextInt(15), rotations.nextInt(3));
+    @Override
+    protected void piecesSwapped() {
+        swapPlacements();
     }
 
-    /**
-     * Replace the current piece with a new piece
-     */
-    public void nextPiece() {
-        currentPiece = nextPiece;
-        nextPiece = spawnPiece();
-        if (nextPieceListener != null) {
-            nextPieceListener.nextPiece(currentPiece);
-        }
-        logger.info("Current piece is now: " + currentPiece);
-    }
-
-    /**
-     * Rotate the current piece
-     * @param times number of rotations specified by user
-     */
-    public void rotateCurrentPiece(int times) {
-        currentPiece.rotate(times);
-    }
-
-    /**
-     * Swap between current and next piece
-     */
-    public void swapCurrentPiece() {
-        GamePiece gamePiece = currentPiece;
-        currentPiece = nextPiece;
-        nextPiece = gamePiece;
-        logger.info("Pieces swapped");
+    @Override
+    protected void cleanBoard() {
+        grid.clean();
+        currentPlacements.reset();
+        nextPlacements.reset();
     }
 
     /**
@@ -326,112 +161,138 @@ public class Game {
     }
 
     /**
-     * Stop the timer
+     * Get the number of rows in this game
+     * @return number of rows
      */
-    public void stopTimer() {
-        this.timer.shutdownNow();
+    public int getRows() {
+        return rows;
     }
 
     /**
-     * Play sound when player level up
-     * @param currentLevel current level
+     * Copy everything that decides how the game carries on. Must be called from inside a command, or while nothing
+     * else is using the game.
+     * @return the state
      */
-    public void levelSounds(int currentLevel) {
-        if (currentLevel != oldLevel) {
-            Multimedia.playAudio("level.wav");
-            oldLevel = currentLevel;
-            logger.info("Level up");
+    public GameState captureState() {
+        var blocks = new byte[cols * rows];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                blocks[y * cols + x] = (byte) grid.get(x, y);
+            }
         }
+        return new GameState(blocks, score, level, lives, multiplier, lines, oldLevel, currentPiece, nextPiece,
+                generator.getState(), generator.getBag());
     }
 
     /**
-     * Skip current piece with 100 points
+     * Put the game into a state captured earlier from a game of the same size
+     * @param state state to restore
      */
-    public void skipPiece() {
-        if (score.get() >= 50) {
-            score.set(score.get() - 50);
-            nextPiece();
-            Multimedia.playAudio("transition.wav");
-            logger.info("Skipped piece");
-        } else {
-            Multimedia.playAudio("fail.wav");
-            logger.info("Not enough points");
+    public void restoreState(GameState state) {
+        if (state.getBlockCount() != cols * rows) {
+            throw new IllegalArgumentException("State is for a different grid size");
         }
+        inbox.submit(() -> {
+            grid.begin();
+            try {
+                for (int index = 0; index < cols * rows; index++) {
+                    grid.set(index % cols, index / cols, state.getBlock(index));
+                }
+            } finally {
+                grid.commit();
+            }
+            score = state.getScore();
+            level = state.getLevel();
+            lives = state.getLives();
+            multiplier = state.getMultiplier();
+            lines = state.getLines();
+            oldLevel = state.getAnnouncedLevel();
+            over = false;
+            generator.setState(state.getRandomState(), state.getBag());
+            currentPiece = state.getCurrentPiece();
+            nextPiece = state.getNextPiece();
+            currentPlacements.rebuild(currentPiece);
+            nextPlacements.rebuild(nextPiece);
+            statsChanged();
+            pieceChanged();
+        });
     }
 
     /**
-     * Buy one life with 300 points
+     * Record a replay of every action from now on. Should be set before the game starts, and the writer closed by the
+     * caller once the game is over.
+     * @param recorder writer to record to, or null to stop recording
      */
-    public void addLives() {
-        if (score.get() >= 100) {
-            score.set(score.get() - 100);
-            lives.set(lives.get() + 1);
-            Multimedia.playAudio("lifegain.wav");
-            logger.info("Added one life");
-        } else {
-            Multimedia.playAudio("fail.wav");
-            logger.info("Not enough points");
-        }
+    public void setRecorder(ReplayWriter recorder) {
+        inbox.submit(() -> this.recorder = recorder);
     }
 
     /**
-     * Clear the whole grid with 500 points
+     * Record an action to the replay, if one is being recorded
+     * @param type record type from ReplayFormat
+     * @param a    first argument
+     * @param b    second argument
      */
-    public void clearAll() {
-        if (score.get() >= 200) {
-            score.set(score.get() - 200);
-            grid.clean();
-            multiplier.set(multiplier.add(1).get());
-            Multimedia.playAudio("explode.wav");
-            logger.info("Grid cleaned");
-        } else {
-            Multimedia.playAudio("fail.wav");
-            logger.info("Not enough points");
+    @Override
+    protected void record(int type, int a, int b) {
+        if (recorder != null) {
+            if (recorder.needsKeyframe()) {
+                recorder.writeKeyframe(captureState());
+            }
+            recorder.write(type, timer.getTime(), a, b);
         }
     }
 
     /**
-     * Remove a life when timer ends
+     * Check whether the current piece, in its current rotation, can be placed by clicking the given block
+     * @param x column of the block
+     * @param y row of the block
+     * @return true if the placement is legal
      */
-    public void livesReset() {
-        if (lives.get() > 0) {
-            lives.set(lives.get() - 1);
-            Multimedia.playAudio("lifelose.wav");
-            logger.info("Life lost");
-        } else {
-            logger.info("Game over");
-            if (gameOverListener != null) {
-                Platform.runLater(() -> gameOverListener.gameOver());
-            }
-        }
+    @Override
+    public boolean canPlaceCurrentPiece(int x, int y) {
+        GamePiece piece = currentPiece;
+        return piece != null && currentPlacements.isLegal(x, y, piece.getRotation());
     }
 
     /**
-     * Reset multiplier to 1
+     * Check whether either the current piece or the next piece can be placed anywhere, in any rotation
+     * @return true if there is at least one legal placement
      */
-    public void multiplierReset() {
-        if (multiplier.get() > 1) {
-            logger.info("Multiplier set to 1");
-            multiplier.set(1);
-        }
+    @Override
+    public boolean hasLegalPlacement() {
+        return !currentPlacements.isEmpty() || !nextPlacements.isEmpty();
     }
 
     /**
-     * Loop events when timer end
+     * Get the index of legal placements of the current piece. Only up to date between commands.
+     * @return placement index
      */
-    public void gameLoop() {
-        livesReset();
-        multiplierReset();
-        nextPiece();
-        gameLoopListener();
-        loop = timer.schedule(this::gameLoop, getTimerDelay(), TimeUnit.MILLISECONDS);
+    public PlacementIndex getCurrentPlacements() {
+        return currentPlacements;
     }
 
     /**
-     * Get the number of rows in this game
-     * @return number of rows
+     * Get the index of legal placements of the next piece. Only up to date between commands.
+     * @return placement index
      */
-    public int getRows() {
-        return rows;
+    public PlacementIndex getNextPlacements() {
+        return nextPlacements;
+    }
+
+    /**
+     * Swap the placement indexes of the current and next piece, to follow the pieces themselves
+     */
+    private void swapPlacements() {
+        PlacementIndex placements = currentPlacements;
+        currentPlacements = nextPlacements;
+        nextPlacements = placements;
+    }
+
+    @Override
+    protected void publishPosition() {
+        if (events.hasSubscribers(GameEvent.PositionChanged.class)) {
+            events.publish(new GameEvent.PositionChanged(new Grid(grid), currentPiece, nextPiece, multiplier));
+        }
     }
 }
@@ -0,0 +1,585 @@
+package uk.ac.soton.comp1206.game;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Holds the state of many headless games in one block of memory off the heap, a fixed-size slot per game, so that
+ * millions of games can be in flight at once without the heap or the garbage collector noticing. Games are numbered
+ * by their slot.
+ *
+ * A slot holds the occupancy bitboard of the board, the current and next pieces, the state of the piece generator, the
+ * score, level, lives, multiplier and lines, the countdown and the number of pieces placed. The rules are BaseGame's
+ * own scoring, level, countdown and penalty steps, worked on the slot, and moves are played on a Grid holding the
+ * slot's board, so a game played here with the same seed and moves ends exactly like a Game.
+ * There are no listeners, no colours and no replays, and the countdown is kept to the millisecond rather than by a
+ * timing wheel.
+ *
+ * Anything can be read from any thread, but games are changed through a Worker, which holds the little scratch state
+ * a thread needs to deal pieces and to play on, search and index the placements of a board. Each game must only be changed by one worker at a
+ * time.
+ */
+public class GameArena {
+    /**
+     * Lives a game starts with
+     */
+    public static final int LIVES = BaseGame.LIVES;
+    /**
+     * Offset of the random state of the piece generator, a long
+     */
+    private static final int STATE = 0;
+    /**
+     * Offset of the seed the game's pieces were dealt from, a long
+     */
+    private static final int SEED = 8;
+    /**
+     * Offset of the score
+     */
+    private static final int SCORE = 16;
+    /**
+     * Offset of the level
+     */
+    private static final int LEVEL = 20;
+    /**
+     * Offset of the lives left
+     */
+    private static final int LIVES_LEFT = 24;
+    /**
+     * Offset of the multiplier
+     */
+    private static final int MULTIPLIER = 28;
+    /**
+     * Offset of the number of lines cleared
+     */
+    private static final int LINES = 32;
+    /**
+     * Offset of the pieces left in the generator's bag
+     */
+    private static final int BAG = 36;
+    /**
+     * Offset of the time left on the countdown, in milliseconds
+     */
+    private static final int COUNTDOWN = 40;
+    /**
+     * Offset of the number of pieces placed
+     */
+    private static final int PLACED = 44;
+    /**
+     * Offset of the current piece, as a short holding its number times four plus its rotation
+     */
+    private static final int CURRENT = 48;
+    /**
+     * Offset of the next piece, in the same form as the current piece
+     */
+    private static final int NEXT = 50;
+    /**
+     * Offset of the status, FREE, PLAYING or OVER
+     */
+    private static final int STATUS = 52;
+    /**
+     * Offset of the occupancy bitboard, in the same layout as Grid's
+     */
+    private static final int BOARD = 56;
+    /**
+     * Status of a slot holding no game
+     */
+    private static final int FREE = 0;
+    /**
+     * Status of a slot holding a game in play
+     */
+    private static final int PLAYING = 1;
+    /**
+     * Status of a slot holding a game that has ended
+     */
+    private static final int OVER = 2;
+    /**
+     * Number of columns of every board
+     */
+    private final int cols;
+    /**
+     * Number of rows of every board
+     */
+    private final int rows;
+    /**
+     * Number of longs of each bitboard
+     */
+    private final int words;
+    /**
+     * Size of each slot in bytes
+     */
+    private final int slotSize;
+    /**
+     * Every slot, one after another
+     */
+    private final ByteBuffer slots;
+    /**
+     * Generator dealing pieces the way the games want them, copied by each worker
+     */
+    private final PieceGenerator dealer;
+    /**
+     * Number of slots
+     */
+    private final int capacity;
+    /**
+     * What happens when no piece can be placed anywhere
+     */
+    private volatile NoPlacementPenalty penalty = NoPlacementPenalty.WAIT;
+
+    /**
+     * Create an arena with every slot free
+     * @param cols     number of columns of every board
+     * @param rows     number of rows of every board
+     * @param capacity number of games the arena can hold at once
+     * @param dealer   generator dealing pieces the way the games want them, whose seed is ignored
+     */
+    public GameArena(int cols, int rows, int capacity, PieceGenerator dealer) {
+        if (cols < 1 || rows < 1 || cols > Grid.MAX_SIZE || rows > Grid.MAX_SIZE) {
+            throw new IllegalArgumentException("Unsupported grid size: " + cols + " x " + rows);
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.words = (cols * rows + 63) >>> 6;
+        this.slotSize = BOARD + 8 * words;
+        if (capacity < 1 || (long) capacity * slotSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Arena must hold from 1 to " + Integer.MAX_VALUE / slotSize
+                    + " games of this size: " + capacity);
+        }
+        this.capacity = capacity;
+        this.dealer = dealer;
+        // Direct buffers start zeroed, so every slot starts free
+        this.slots = ByteBuffer.allocateDirect(capacity * slotSize).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Create a worker to change games from the calling thread
+     * @return the worker
+     */
+    public Worker newWorker() {
+        return new Worker();
+    }
+
+    /**
+     * Choose what happens when neither piece can be placed anywhere
+     * @param penalty the penalty
+     */
+    public void setNoPlacementPenalty(NoPlacementPenalty penalty) {
+        this.penalty = penalty;
+    }
+
+    /**
+     * Get the number of games the arena can hold at once
+     * @return number of slots
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the size of each slot
+     * @return size in bytes
+     */
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    /**
+     * Get the number of columns of every board
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows of every board
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Check whether a game is in play
+     * @param game slot of the game
+     * @return true if it has started and not ended
+     */
+    public boolean isPlaying(int game) {
+        return slots.getInt(base(game) + STATUS) == PLAYING;
+    }
+
+    /**
+     * Check whether a game has ended
+     * @param game slot of the game
+     * @return true if it has ended and the slot not been freed since
+     */
+    public boolean isOver(int game) {
+        return slots.getInt(base(game) + STATUS) == OVER;
+    }
+
+    /**
+     * Get the seed a game's pieces are dealt from
+     * @param game slot of the game
+     * @return seed
+     */
+    public long getSeed(int game) {
+        return slots.getLong(base(game) + SEED);
+    }
+
+    /**
+     * Get the score of a game
+     * @param game slot of the game
+     * @return score
+     */
+    public int getScore(int game) {
+        return slots.getInt(base(game) + SCORE);
+    }
+
+    /**
+     * Get the level of a game
+     * @param game slot of the game
+     * @return level
+     */
+    public int getLevel(int game) {
+        return slots.getInt(base(game) + LEVEL);
+    }
+
+    /**
+     * Get the lives left in a game
+     * @param game slot of the game
+     * @return lives
+     */
+    public int getLives(int game) {
+        return slots.getInt(base(game) + LIVES_LEFT);
+    }
+
+    /**
+     * Get the multiplier of a game
+     * @param game slot of the game
+     * @return multiplier
+     */
+    public int getMultiplier(int game) {
+        return slots.getInt(base(game) + MULTIPLIER);
+    }
+
+    /**
+     * Get the number of lines a game has cleared
+     * @param game slot of the game
+     * @return number of lines
+     */
+    public int getLines(int game) {
+        return slots.getInt(base(game) + LINES);
+    }
+
+    /**
+     * Get the number of pieces placed in a game
+     * @param game slot of the game
+     * @return number of pieces
+     */
+    public int getPlaced(int game) {
+        return slots.getInt(base(game) + PLACED);
+    }
+
+    /**
+     * Get the time left on a game's countdown
+     * @param game slot of the game
+     * @return time in milliseconds
+     */
+    public int getTimeRemaining(int game) {
+        return slots.getInt(base(game) + COUNTDOWN);
+    }
+
+    /**
+     * Get the current piece of a game
+     * @param game slot of the game
+     * @return current piece
+     */
+    public GamePiece getCurrentPiece(int game) {
+        return piece(slots.getShort(base(game) + CURRENT));
+    }
+
+    /**
+     * Get the next piece of a game
+     * @param game slot of the game
+     * @return next piece
+     */
+    public GamePiece getNextPiece(int game) {
+        return piece(slots.getShort(base(game) + NEXT));
+    }
+
+    /**
+     * Find the first byte of a game's slot
+     * @param game slot of the game
+     * @return offset into the buffer
+     */
+    private int base(int game) {
+        if (game < 0 || game >= capacity) {
+            throw new IndexOutOfBoundsException("No slot " + game + " in an arena of " + capacity);
+        }
+        return game * slotSize;
+    }
+
+    /**
+     * Look up a piece stored in a slot
+     * @param code piece number times four plus rotation
+     * @return the piece
+     */
+    private GamePiece piece(int code) {
+        return dealer.getPieceSet().getPiece(code >>> 2, code & (GamePiece.ROTATIONS - 1));
+    }
+
+    /**
+     * Store a piece in a slot
+     * @param offset where to store it
+     * @param piece  the piece
+     */
+    private void putPiece(int offset, GamePiece piece) {
+        slots.putShort(offset, (short) (piece.getPiece() << 2 | piece.getRotation()));
+    }
+
+    /**
+     * Changes the games of an arena from one thread. Workers hold a piece generator to deal from each game's stored
+     * state, and a grid and placement index to play on and check a game's board with, but nothing per game.
+     */
+    public class Worker {
+        /**
+         * Generator restored to a game's state before each piece is dealt
+         */
+        private final PieceGenerator generator = dealer.withSeed(0);
+        /**
+         * Pieces in a full bag
+         */
+        private final int fullBag = generator.getBag();
+        /**
+         * Board of the last game played on or handed out by getGrid
+         */
+        private final Grid grid = new Grid(cols, rows);
+        /**
+         * Bitboard read out of a slot for the grid
+         */
+        private final long[] board = new long[words];
+        /**
+         * Legal placements of a piece on the grid, rebuilt for each check
+         */
+        private final PlacementIndex placements = new PlacementIndex(grid);
+
+        /**
+         * Create a worker
+         */
+        private Worker() {
+        }
+
+        /**
+         * Start a new game in a slot, replacing whatever was there
+         * @param game slot of the game
+         * @param seed seed to deal the game's pieces from
+         */
+        public void start(int game, long seed) {
+            int base = base(game);
+            for (int offset = 0; offset < slotSize; offset += 8) {
+                slots.putLong(base + offset, 0);
+            }
+            slots.putLong(base + STATE, seed);
+            slots.putInt(base + BAG, fullBag);
+            slots.putLong(base + SEED, seed);
+            slots.putInt(base + LIVES_LEFT, LIVES);
+            slots.putInt(base + MULTIPLIER, 1);
+            slots.putInt(base + STATUS, PLAYING);
+            // The first piece dealt is the current one, as in Game
+            putPiece(base + NEXT, deal(base));
+            nextPiece(base);
+            slots.putInt(base + COUNTDOWN, BaseGame.delayFor(0));
+        }
+
+        /**
+         * Free a slot, so that it holds no game
+         * @param game slot of the game
+         */
+        public void free(int game) {
+            slots.putInt(base(game) + STATUS, FREE);
+        }
+
+        /**
+         * Get a game's board as a grid, to search for moves on. Filled blocks are not coloured by their pieces, only
+         * set to some value other than 0.
+         * @param game slot of the game
+         * @return the board, shared by every call on this worker, only valid until the next and must not be modified
+         */
+        public Grid getGrid(int game) {
+            return load(base(game));
+        }
+
+        /**
+         * Rotate the current piece, the same as Game.rotateCurrentPiece
+         * @param game  slot of the game
+         * @param times number of quarter turns
+         */
+        public void rotate(int game, int times) {
+            int base = base(game);
+            putPiece(base + CURRENT, piece(slots.getShort(base + CURRENT)).rotate(times));
+        }
+
+        /**
+         * Swap the current and next pieces, the same as Game.swapCurrentPiece
+         * @param game slot of the game
+         */
+        public void swap(int game) {
+            int base = base(game);
+            short current = slots.getShort(base + CURRENT);
+            slots.putShort(base + CURRENT, slots.getShort(base + NEXT));
+            slots.putShort(base + NEXT, current);
+            checkPlacements(base);
+        }
+
+        /**
+         * Place the current piece with its pivot on a block, clearing lines and scoring them the same as
+         * Game.blockClicked
+         * @param game   slot of the game
+         * @param blockX column of the block
+         * @param blockY row of the block
+         * @return true if the piece fitted
+         */
+        public boolean place(int game, int blockX, int blockY) {
+            int base = base(game);
+            if (slots.getInt(base + STATUS) != PLAYING) return false;
+            GamePiece piece = piece(slots.getShort(base + CURRENT));
+            Grid grid = load(base);
+            if (!grid.playPiece(piece, blockX - piece.getPivotX(), blockY - piece.getPivotY())) return false;
+            slots.putInt(base + PLACED, slots.getInt(base + PLACED) + 1);
+
+            // Only the lines the piece touched can have become full, as in Game
+            int lines = grid.clearFullLines();
+            store(base);
+            if (lines > 0) {
+                int multiplier = slots.getInt(base + MULTIPLIER);
+                int score = slots.getInt(base + SCORE) + BaseGame.pointsFor(lines, grid.getClearedBlocks(), multiplier);
+                slots.putInt(base + SCORE, score);
+                slots.putInt(base + LINES, slots.getInt(base + LINES) + lines);
+                slots.putInt(base + MULTIPLIER, multiplier + 1);
+                slots.putInt(base + LEVEL, BaseGame.levelFor(score));
+            } else {
+                slots.putInt(base + MULTIPLIER, 1);
+            }
+            nextPiece(base);
+            slots.putInt(base + COUNTDOWN, BaseGame.delayFor(slots.getInt(base + LEVEL)));
+            checkPlacements(base);
+            return true;
+        }
+
+        /**
+         * Run a game's countdown out straight away, the same as Game.expireTimer
+         * @param game slot of the game
+         */
+        public void expire(int game) {
+            int base = base(game);
+            if (slots.getInt(base + STATUS) != PLAYING) return;
+            gameLoop(base);
+            checkPlacements(base);
+        }
+
+        /**
+         * Let time pass in a game, running its countdown out as often as it ends
+         * @param game slot of the game
+         * @param time time in milliseconds
+         */
+        public void advance(int game, long time) {
+            int base = base(game);
+            long left = slots.getInt(base + COUNTDOWN) - time;
+            while (left <= 0 && slots.getInt(base + STATUS) == PLAYING) {
+                // The next countdown starts when the last one ran out
+                gameLoop(base);
+                checkPlacements(base);
+                left += slots.getInt(base + COUNTDOWN);
+            }
+            slots.putInt(base + COUNTDOWN, (int) Math.max(left, 0));
+        }
+
+        /**
+         * Lose a life, or end the game when none are left, and move on to the next piece, the same as Game.gameLoop
+         * @param base first byte of the game's slot
+         */
+        private void gameLoop(int base) {
+            int lives = slots.getInt(base + LIVES_LEFT);
+            if (lives > 0) {
+                slots.putInt(base + LIVES_LEFT, lives - 1);
+            } else {
+                slots.putInt(base + STATUS, OVER);
+            }
+            slots.putInt(base + MULTIPLIER, 1);
+            nextPiece(base);
+            slots.putInt(base + COUNTDOWN, BaseGame.delayFor(slots.getInt(base + LEVEL)));
+        }
+
+        /**
+         * Apply the penalty while neither piece fits anywhere, the same as Game.checkPlacements
+         * @param base first byte of the game's slot
+         */
+        private void checkPlacements(int base) {
+            load(base);
+            while (slots.getInt(base + STATUS) == PLAYING && !fitsAnywhere(base + CURRENT)
+                    && !fitsAnywhere(base + NEXT)) {
+                if (!BaseGame.penalise(penalty, () -> gameLoop(base), () -> slots.putInt(base + STATUS, OVER))) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Check whether a piece fits anywhere on the grid in any rotation, by indexing its placements as Game does
+         * @param offset where the piece is stored
+         * @return true if it fits somewhere
+         */
+        private boolean fitsAnywhere(int offset) {
+            placements.rebuild(piece(slots.getShort(offset)));
+            return !placements.isEmpty();
+        }
+
+        /**
+         * Show a game's board on the grid, unless the grid already shows it
+         * @param base first byte of the game's slot
+         * @return the grid
+         */
+        private Grid load(int base) {
+            long[] shown = grid.getOccupiedWords();
+            boolean same = true;
+            for (int word = 0; word < words; word++) {
+                board[word] = slots.getLong(base + BOARD + 8 * word);
+                same &= board[word] == shown[word];
+            }
+            if (!same) grid.load(board, 1);
+            return grid;
+        }
+
+        /**
+         * Store the grid as a game's board
+         * @param base first byte of the game's slot
+         */
+        private void store(int base) {
+            long[] shown = grid.getOccupiedWords();
+            for (int word = 0; word < words; word++) {
+                slots.putLong(base + BOARD + 8 * word, shown[word]);
+            }
+        }
+
+        /**
+         * Make the next piece current and deal a new next piece
+         * @param base first byte of the game's slot
+         */
+        private void nextPiece(int base) {
+            slots.putShort(base + CURRENT, slots.getShort(base + NEXT));
+            putPiece(base + NEXT, deal(base));
+        }
+
+        /**
+         * Deal a game's next piece from its stored generator state, storing the state after it
+         * @param base first byte of the game's slot
+         * @return the piece
+         */
+        private GamePiece deal(int base) {
+            generator.setState(slots.getLong(base + STATE), slots.getInt(base + BAG));
+            GamePiece piece = generator.nextUnbuffered();
+            slots.putLong(base + STATE, generator.getState());
+            slots.putInt(base + BAG, generator.getBag());
+            return piece;
+        }
+    }
+}
@@ -1,38 +1,138 @@
 package uk.ac.soton.comp1206.game;
 
+import java.util.Arrays;
+
 /**
  * Instances of GamePiece Represents the model of a specific Game Piece with its block makeup.
  *
- * The GamePiece class also contains a factory for producing a GamePiece of a particular shape, as specified by its number.
+ * A piece is a list of blocks around a pivot, the block placed where the player clicks and the one the piece turns
+ * about. Rotating a piece turns the offset of each block from the pivot a quarter turn, so pieces can be any size and
+ * shape. Block positions are given from the top left of the piece's bounding box.
+ *
+ * Pieces come from the active PieceSet, which builds every piece in every rotation once, when it is loaded, together
+ * with its cell offsets, row masks and bounding box. Pieces are immutable, so rotating a piece or creating a new one
+ * just looks up the shared instance.
+ *
+ * The GamePiece class also contains a factory for producing a GamePiece of a particular shape, as specified by its
+ * number.
  */
 public class GamePiece {
+    /**
+     * Number of different rotations of each piece
+     */
+    public static final int ROTATIONS = 4;
+
     /**
      * The name of this piece
      */
     private final String name;
     /**
-     * The 2D grid representation of the shape of this piece
+     * The number of this piece
      */
-    private int[][] blocks;
+    private final int piece;
+    /**
+     * The value (colour) of this piece
+     */
+    private final int value;
+    /**
+     * How many times this piece has been rotated from its starting shape
+     */
+    private final int rotation;
+    /**
+     * Size of the bounding box of this piece
+     */
+    private final int width, height;
+    /**
+     * Position of the pivot in the bounding box
+     */
+    private final int pivotX, pivotY;
+    /**
+     * Column of each block of this piece, in reading order
+     */
+    private final int[] cellX;
+    /**
+     * Row of each block of this piece, in reading order
+     */
+    private final int[] cellY;
+    /**
+     * Bitmask of each row of the piece, bit x is set if there is a block at column x
+     */
+    private final long[] rowMasks;
+    /**
+     * This piece in every rotation, shared between all four rotations
+     */
+    private GamePiece[] rotations;
 
     /**
      * Create a new GamePiece with the given name, block makeup and value. Should not be called directly, only via the
      * factory.
-     * @param name   name of the piece
-     * @param blocks block makeup of the piece
-     * @param value  the value of this piece
+     * @param name     name of the piece
+     * @param piece    number of the piece
+     * @param value    the value of this piece
+     * @param rotation rotation of this piece
+     * @param dx       column of each block relative to the pivot
+     * @param dy       row of each block relative to the pivot
      */
-    private GamePiece(String name, int[][] blocks, int value) {
+    private GamePiece(String name, int piece, int value, int rotation, int[] dx, int[] dy) {
         this.name = name;
-        this.blocks = blocks;
+        this.piece = piece;
+        this.value = value;
+        this.rotation = rotation;
 
-        // Use the shape of the block to create a grid with either 0 (empty) or the value of this shape for each block
-        for (int x = 0; x < blocks.length; x++) {
-            for (int y = 0; y < blocks[x].length; y++) {
-                if (blocks[x][y] == 0) continue;
-                blocks[x][y] = value;
+        int left = 0, top = 0, right = 0, bottom = 0;
+        for (int cell = 0; cell < dx.length; cell++) {
+            left = Math.min(left, dx[cell]);
+            top = Math.min(top, dy[cell]);
+            right = Math.max(right, dx[cell]);
+            bottom = Math.max(bottom, dy[cell]);
+        }
+        pivotX = -left;
+        pivotY = -top;
+        width = right - left + 1;
+        height = bottom - top + 1;
+
+        // Store the blocks in reading order, so that two pieces of the same shape have identical lists
+        var order = new Integer[dx.length];
+        for (int cell = 0; cell < order.length; cell++) {
+            order[cell] = (dy[cell] - top) * width + dx[cell] - left;
+        }
+        Arrays.sort(order);
+        cellX = new int[order.length];
+        cellY = new int[order.length];
+        rowMasks = new long[height];
+        for (int cell = 0; cell < order.length; cell++) {
+            cellX[cell] = order[cell] % width;
+            cellY[cell] = order[cell] / width;
+            rowMasks[cellY[cell]] |= 1L << cellX[cell];
+        }
+    }
+
+    /**
+     * Build all four rotations of a piece, turning the offset of each block from the pivot a quarter turn clockwise
+     * each time
+     * @param name  name of the piece
+     * @param piece number of the piece
+     * @param dx    column of each block relative to the pivot, in the starting rotation
+     * @param dy    row of each block relative to the pivot, in the starting rotation
+     * @param value the value of this piece
+     * @return the piece in each rotation
+     */
+    static GamePiece[] createRotations(String name, int piece, int[] dx, int[] dy, int value) {
+        var rotations = new GamePiece[ROTATIONS];
+        dx = dx.clone();
+        dy = dy.clone();
+        for (int rotation = 0; rotation < ROTATIONS; rotation++) {
+            rotations[rotation] = new GamePiece(name, piece, value, rotation, dx, dy);
+            for (int cell = 0; cell < dx.length; cell++) {
+                int x = dx[cell];
+                dx[cell] = -dy[cell];
+                dy[cell] = x;
             }
         }
+        for (GamePiece rotation : rotations) {
+            rotation.rotations = rotations;
+        }
+        return rotations;
     }
 
     /**
@@ -41,150 +141,136 @@ public class GamePiece {
      * @return the created GamePiece
      */
     public static GamePiece createPiece(int piece) {
-        switch (piece) {
-            // Line
-            case 0 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Line", blocks, 1);
-            }
-
-            // C
-            case 1 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {1, 0, 1}};
-                return new GamePiece("C", blocks, 2);
-            }
-
-            // Plus
-            case 2 -> {
-                int[][] blocks = {{0, 1, 0}, {1, 1, 1}, {0, 1, 0}};
-                return new GamePiece("Plus", blocks, 3);
-            }
-
-            // Dot
-            case 3 -> {
-                int[][] blocks = {{0, 0, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Dot", blocks, 4);
-            }
-
-            // Square
-            case 4 -> {
-                int[][] blocks = {{1, 1, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Square", blocks, 5);
-            }
-
-            // L
-            case 5 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 1}};
-                return new GamePiece("L", blocks, 6);
-            }
-
-            // J
-            case 6 -> {
-                int[][] blocks = {{0, 0, 1}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("J", blocks, 7);
-            }
-
-            // S
-            case 7 -> {
-                int[][] blocks = {{0, 0, 0}, {0, 1, 1}, {1, 1, 0}};
-                return new GamePiece("S", blocks, 8);
-            }
+        return createPiece(piece, 0);
+    }
 
-            // Z
-            case 8 -> {
-                int[][] blocks = {{1, 1, 0}, {0, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Z", blocks, 9);
-            }
+    /**
+     * Create a new GamePiece of the specified piece number and rotation, from the active piece set
+     * @param piece    piece number
+     * @param rotation number of times to rotate
+     * @return the created GamePiece
+     */
+    public static GamePiece createPiece(int piece, int rotation) {
+        return PieceSet.getActive().getPiece(piece, rotation);
+    }
 
-            // T
-            case 9 -> {
-                int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("T", blocks, 10);
-            }
+    /**
+     * Get this piece rotated the given number of rotations
+     * @param rotations number of rotations
+     * @return the rotated piece
+     */
+    public GamePiece rotate(int rotations) {
+        return this.rotations[(rotation + rotations) & (ROTATIONS - 1)];
+    }
 
-            // X
-            case 10 -> {
-                int[][] blocks = {{1, 0, 1}, {0, 1, 0}, {1, 0, 1}};
-                return new GamePiece("X", blocks, 11);
-            }
+    /**
+     * Get this piece rotated exactly once
+     * @return the rotated piece
+     */
+    public GamePiece rotate() {
+        return rotate(1);
+    }
 
-            // Corner
-            case 11 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("Corner", blocks, 12);
-            }
+    /**
+     * Get the number of this piece
+     * @return piece number
+     */
+    public int getPiece() {
+        return piece;
+    }
 
-            // Inverse Corner
-            case 12 -> {
-                int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Inverse Corner", blocks, 13);
-            }
+    /**
+     * Get the value (colour) of this piece
+     * @return value
+     */
+    public int getValue() {
+        return value;
+    }
 
-            // Diagonal
-            case 13 -> {
-                int[][] blocks = {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}};
-                return new GamePiece("Diagonal", blocks, 14);
-            }
+    /**
+     * Get how many times this piece has been rotated from its starting shape
+     * @return rotation between 0 and 3
+     */
+    public int getRotation() {
+        return rotation;
+    }
 
-            // Double
-            case 14 -> {
-                int[][] blocks = {{0, 1, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Double", blocks, 15);
-            }
-        }
+    /**
+     * Get the width of the bounding box of this piece
+     * @return width in blocks
+     */
+    public int getWidth() {
+        return width;
+    }
 
-        // Not a valid piece number
-        throw new IndexOutOfBoundsException("No such piece: " + piece);
+    /**
+     * Get the height of the bounding box of this piece
+     * @return height in blocks
+     */
+    public int getHeight() {
+        return height;
     }
 
     /**
-     * Create a new GamePiece of the specified piece number and rotation
-     * @param piece    piece number
-     * @param rotation number of times to rotate
-     * @return the created GamePiece
+     * Get the column of the pivot, the block placed where the player clicks
+     * @return column within the piece
      */
-    public static GamePiece createPiece(int piece, int rotation) {
-        var newPiece = createPiece(piece);
-        newPiece.rotate(rotation);
-        return newPiece;
+    public int getPivotX() {
+        return pivotX;
     }
 
     /**
-     * Get the block makeup of this piece
-     * @return 2D grid of the blocks representing the piece shape
+     * Get the row of the pivot, the block placed where the player clicks
+     * @return row within the piece
      */
-    public int[][] getBlocks() {
-        return blocks;
+    public int getPivotY() {
+        return pivotY;
     }
 
     /**
-     * Rotate this piece the given number of rotations
-     * @param rotations number of rotations
+     * Get the number of blocks in this piece
+     * @return number of blocks
      */
-    public void rotate(int rotations) {
-        for (int rotated = 0; rotated < rotations; rotated++) {
-            rotate();
-        }
+    public int getCellCount() {
+        return cellX.length;
     }
 
     /**
-     * Rotate this piece exactly once by rotating its 3x3 grid
+     * Get the column of one of the blocks of this piece
+     * @param cell block index
+     * @return column within the piece
      */
-    public void rotate() {
-        int[][] rotated = new int[blocks.length][blocks[0].length];
-        rotated[2][0] = blocks[0][0];
-        rotated[1][0] = blocks[0][1];
-        rotated[0][0] = blocks[0][2];
+    public int getCellX(int cell) {
+        return cellX[cell];
+    }
 
-        rotated[2][1] = blocks[1][0];
-        rotated[1][1] = blocks[1][1];
-        rotated[0][1] = blocks[1][2];
+    /**
+     * Get the row of one of the blocks of this piece
+     * @param cell block index
+     * @return row within the piece
+     */
+    public int getCellY(int cell) {
+        return cellY[cell];
+    }
 
-        rotated[2][2] = blocks[2][0];
-        rotated[1][2] = blocks[2][1];
-        rotated[0][2] = blocks[2][2];
+    /**
+     * Get the bitmask of one row of the piece
+     * @param y row within the piece
+     * @return mask with bit x set if there is a block at column x
+     */
+    public long getRowMask(int y) {
+        return rowMasks[y];
+    }
 
-        blocks = rotated;
+    /**
+     * Check whether another piece covers the same blocks as this one when placed by clicking the same block, whatever
+     * its colour. Placing either has the same effect on the board.
+     * @param other other piece
+     * @return true if the shapes and pivots match
+     */
+    public boolean isSameShape(GamePiece other) {
+        return pivotX == other.pivotX && pivotY == other.pivotY && width == other.width
+                && Arrays.equals(rowMasks, other.rowMasks);
     }
 
     /**
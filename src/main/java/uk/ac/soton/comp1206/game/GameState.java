@@ -0,0 +1,155 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * An immutable copy of everything that decides how a Game carries on: the board, the stats, both pieces and the state
+ * of the piece generator. Restoring it into a game of the same size makes the game behave exactly as the
+ * original did from that point.
+ */
+public final class GameState {
+    /**
+     * Value of every block, indexed by y * cols + x
+     */
+    private final byte[] blocks;
+    /**
+     * Score, level, lives, multiplier, lines cleared and last level announced
+     */
+    private final int score, level, lives, multiplier, lines, announcedLevel;
+    /**
+     * Current and next piece
+     */
+    private final GamePiece currentPiece, nextPiece;
+    /**
+     * State of the random number generator
+     */
+    private final long randomState;
+    /**
+     * Pieces left in the piece generator's bag
+     */
+    private final int bag;
+
+    /**
+     * Create a game state
+     * @param blocks         value of every block, indexed by y * cols + x, owned by the state from now on
+     * @param score          score
+     * @param level          level
+     * @param lives          lives left
+     * @param multiplier     score multiplier
+     * @param lines          lines cleared
+     * @param announcedLevel last level a level up sound was played for
+     * @param currentPiece   current piece
+     * @param nextPiece      next piece
+     * @param randomState    state of the random number generator
+     * @param bag            pieces left in the piece generator's bag, bit i set if piece i is still in it
+     */
+    public GameState(byte[] blocks, int score, int level, int lives, int multiplier, int lines, int announcedLevel,
+                     GamePiece currentPiece, GamePiece nextPiece, long randomState, int bag) {
+        this.blocks = blocks;
+        this.score = score;
+        this.level = level;
+        this.lives = lives;
+        this.multiplier = multiplier;
+        this.lines = lines;
+        this.announcedLevel = announcedLevel;
+        this.currentPiece = currentPiece;
+        this.nextPiece = nextPiece;
+        this.randomState = randomState;
+        this.bag = bag;
+    }
+
+    /**
+     * Get the value of a block
+     * @param index block index, y * cols + x
+     * @return the value
+     */
+    public int getBlock(int index) {
+        return blocks[index];
+    }
+
+    /**
+     * Get the number of blocks
+     * @return number of blocks
+     */
+    public int getBlockCount() {
+        return blocks.length;
+    }
+
+    /**
+     * Get the score
+     * @return score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Get the level
+     * @return level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Get the number of lives left
+     * @return lives
+     */
+    public int getLives() {
+        return lives;
+    }
+
+    /**
+     * Get the score multiplier
+     * @return multiplier
+     */
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Get the number of lines cleared
+     * @return lines
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Get the last level a level up sound was played for
+     * @return level
+     */
+    public int getAnnouncedLevel() {
+        return announcedLevel;
+    }
+
+    /**
+     * Get the current piece
+     * @return current piece
+     */
+    public GamePiece getCurrentPiece() {
+        return currentPiece;
+    }
+
+    /**
+     * Get the next piece
+     * @return next piece
+     */
+    public GamePiece getNextPiece() {
+        return nextPiece;
+    }
+
+    /**
+     * Get the state of the random number generator
+     * @return state
+     */
+    public long getRandomState() {
+        return randomState;
+    }
+
+    /**
+     * Get the pieces left in the piece generator's bag
+     * @return bit i set if piece i is still in the bag
+     */
+    public int getBag() {
+        return bag;
+    }
+}
@@ -0,0 +1,79 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * An immutable snapshot of the score, level, lives and multiplier of a game, published once per batch of changes
+ */
+public final class GameStats {
+    /**
+     * Current score
+     */
+    private final int score;
+    /**
+     * Current level
+     */
+    private final int level;
+    /**
+     * Lives left
+     */
+    private final int lives;
+    /**
+     * Current multiplier
+     */
+    private final int multiplier;
+
+    /**
+     * Create a snapshot of the stats
+     * @param score      current score
+     * @param level      current level
+     * @param lives      lives left
+     * @param multiplier current multiplier
+     */
+    public GameStats(int score, int level, int lives, int multiplier) {
+        this.score = score;
+        this.level = level;
+        this.lives = lives;
+        this.multiplier = multiplier;
+    }
+
+    /**
+     * Get the score
+     * @return score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Get the level
+     * @return level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Get the number of lives left
+     * @return lives
+     */
+    public int getLives() {
+        return lives;
+    }
+
+    /**
+     * Get the score multiplier
+     * @return multiplier
+     */
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Return a string representation of these stats
+     * @return string representation
+     */
+    @Override
+    public String toString() {
+        return "GameStats [score = " + score + ", level = " + level + ", lives = " + lives + ", multiplier = "
+                + multiplier + "]";
+    }
+}
@@ -1,20 +1,35 @@
 package uk.ac.soton.comp1206.game;
 
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
+import uk.ac.soton.comp1206.event.GridChangedListener;
+
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * The Grid is a model which holds the state of a game board. It is made up of a set of Integer values arranged in a 2D
- * arrow, with rows and columns.
+ * array, with rows and columns.
+ *
+ * Occupancy is kept in a bitboard: one bit per block, stored row by row, so a board of up to 64 blocks fits in a single
+ * long and larger boards span several longs. The value of each block is kept alongside in a compact colour plane.
+ * Checking and placing pieces are done with mask operations on whole rows at a time.
  *
- * Each value inside the Grid is an IntegerProperty can be bound to enable modification and display of the contents of
- * the grid.
+ * The grid also counts the filled blocks of every row and column, and remembers the area touched since the last line
+ * clear, so that finding full lines after a placement only looks at the lines the piece touched. A Zobrist hash of the
+ * occupancy is kept up to date as blocks fill and empty, so that searches can recognise boards they have seen before.
  *
  * The Grid contains functions related to modifying the model, for example, placing a piece inside the grid.
  *
- * The Grid should be linked to a GameBoard for its display.
+ * Changes are made in transactions. Every change between begin and commit is applied straight away, but the listener is
+ * only told once, on commit, with the whole set of blocks that changed. Each mutation outside a transaction is a
+ * transaction of its own, so placing a piece, clearing lines or cleaning the grid is each reported as a single change.
+ *
+ * The Grid should be linked to a GameBoard for its display, which observes it through a GridChangedListener.
  */
 public class Grid {
+    /**
+     * The largest number of rows or columns a grid can have, so that a row or a column fits in one long
+     */
+    public static final int MAX_SIZE = 64;
     /**
      * The number of columns in this grid
      */
@@ -24,9 +39,53 @@ public class Grid {
      */
     private final int rows;
     /**
-     * The grid is a 2D arrow with rows and columns of SimpleIntegerProperties
+     * Occupancy bitboard, bit (y * cols + x) is set when the block at x and y is filled
+     */
+    private final long[] occupied;
+    /**
+     * Colour plane holding the value of every block, indexed by y * cols + x
+     */
+    private final byte[] colours;
+    /**
+     * Mask with the lowest cols bits set, representing a full row
+     */
+    private final long fullRow;
+    /**
+     * Number of filled blocks in each row
+     */
+    private final int[] rowCounts;
+    /**
+     * Number of filled blocks in each column
+     */
+    private final int[] columnCounts;
+    /**
+     * Blocks emptied by the last line clear, in the same layout as the occupancy bitboard
+     */
+    private final long[] cleared;
+    /**
+     * Number of blocks emptied by the last line clear
+     */
+    private int clearedBlocks = 0;
+    /**
+     * Zobrist hash of the occupancy, the exclusive or of the key of every filled block
+     */
+    private long hash = 0;
+    /**
+     * Area touched since the last line clear, empty when left is greater than right
+     */
+    private int touchedLeft, touchedTop, touchedRight = -1, touchedBottom = -1;
+    /**
+     * Blocks changed in the open transaction, in the same layout as the occupancy bitboard
+     */
+    private final long[] dirty;
+    /**
+     * Number of transactions open, changes are reported when it drops back to zero
      */
-    private final SimpleIntegerProperty[][] grid;
+    private int depth = 0;
+    /**
+     * Listener to call when a transaction changed the value of any block
+     */
+    private GridChangedListener gridChangedListener = null;
 
     /**
      * Create a new Grid with the specified number of columns and rows and initialize them
@@ -34,28 +93,119 @@ public class Grid {
      * @param rows number of rows
      */
     public Grid(int cols, int rows) {
+        if (cols < 1 || rows < 1 || cols > MAX_SIZE || rows > MAX_SIZE) {
+            throw new IllegalArgumentException("Unsupported grid size: " + cols + " x " + rows);
+        }
         this.cols = cols;
         this.rows = rows;
 
-        // Create the grid itself
-        grid = new SimpleIntegerProperty[cols][rows];
+        // Create the bitboard and the colour plane, every block starts empty
+        int cells = cols * rows;
+        occupied = new long[(cells + 63) >>> 6];
+        colours = new byte[cells];
+        cleared = new long[occupied.length];
+        dirty = new long[occupied.length];
+        rowCounts = new int[rows];
+        columnCounts = new int[cols];
+        touchedLeft = cols;
+        touchedTop = rows;
+
+        fullRow = cols == 64 ? -1L : (1L << cols) - 1;
+    }
+
+    /**
+     * Create a new Grid holding a copy of the blocks of another grid. Listeners are not copied.
+     * @param other grid to copy
+     */
+    public Grid(Grid other) {
+        this(other.cols, other.rows);
+        copyFrom(other);
+    }
+
+    /**
+     * Overwrite this grid with the blocks of another grid of the same size, without telling the listener. Meant for
+     * scratch grids that are reused many times, such as when searching for moves.
+     * @param other grid to copy
+     */
+    public void copyFrom(Grid other) {
+        if (other.cols != cols || other.rows != rows) {
+            throw new IllegalArgumentException("Grid size mismatch: " + other.cols + " x " + other.rows);
+        }
+        System.arraycopy(other.occupied, 0, occupied, 0, occupied.length);
+        System.arraycopy(other.colours, 0, colours, 0, colours.length);
+        System.arraycopy(other.rowCounts, 0, rowCounts, 0, rows);
+        System.arraycopy(other.columnCounts, 0, columnCounts, 0, cols);
+        hash = other.hash;
+        touchedLeft = other.touchedLeft;
+        touchedTop = other.touchedTop;
+        touchedRight = other.touchedRight;
+        touchedBottom = other.touchedBottom;
+    }
 
-        // Add a SimpleIntegerProperty to every block in the grid
-        for (var y = 0; y < rows; y++) {
-            for (var x = 0; x < cols; x++) {
-                grid[x][y] = new SimpleIntegerProperty(0);
+    /**
+     * Overwrite this grid with an occupancy bitboard, giving every filled block the same value, without telling the
+     * listener. Meant for scratch grids standing in for boards kept elsewhere, such as in a GameArena.
+     * @param words occupancy bitboard, bit (y * cols + x) set when the block at x and y is filled
+     * @param value value of every filled block
+     */
+    public void load(long[] words, int value) {
+        System.arraycopy(words, 0, occupied, 0, occupied.length);
+        Arrays.fill(colours, (byte) 0);
+        hash = 0;
+        for (int y = 0; y < rows; y++) {
+            long bits = rowBits(y);
+            rowCounts[y] = Long.bitCount(bits);
+            for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+                int x = Long.numberOfTrailingZeros(remaining);
+                colours[y * cols + x] = (byte) value;
+                hash ^= Zobrist.cell(x, y);
+            }
+        }
+        for (int x = 0; x < cols; x++) {
+            int count = 0;
+            for (int y = 0; y < rows; y++) {
+                count += colours[y * cols + x] != 0 ? 1 : 0;
             }
+            columnCounts[x] = count;
         }
+        resetTouched();
     }
 
     /**
-     * Get the Integer property contained inside the grid at a given row and column index. Can be used for binding.
-     * @param x column
-     * @param y row
-     * @return the IntegerProperty at the given x and y in this grid
+     * Listen for changes to the value of any block in this grid. Used to link the grid to its display.
+     * @param listener listener to call once for every transaction that changed a block
+     */
+    public void setOnGridChanged(GridChangedListener listener) {
+        gridChangedListener = listener;
+    }
+
+    /**
+     * Open a transaction. Changes are applied as they are made, but only reported once the matching commit is made.
+     * Transactions can be nested, in which case everything is reported by the outermost commit.
+     */
+    public void begin() {
+        depth++;
+    }
+
+    /**
+     * Close a transaction, telling the listener about every block changed since the outermost begin
      */
-    public IntegerProperty getGridProperty(int x, int y) {
-        return grid[x][y];
+    public void commit() {
+        if (depth == 0) {
+            throw new IllegalStateException("No transaction to commit");
+        }
+        if (--depth > 0) return;
+        boolean changed = false;
+        for (long word : dirty) {
+            changed |= word != 0;
+        }
+        if (!changed) return;
+        // The change set is copied out, so the listener can hand it to another thread
+        var change = gridChangedListener == null ? null : new GridChange(cols, BitSet.valueOf(dirty), colours.clone());
+        Arrays.fill(dirty, 0);
+        if (change != null) {
+            gridChangedListener.gridChanged(change);
+        }
     }
 
     /**
@@ -65,23 +215,43 @@ public class Grid {
      * @param value the new value
      */
     public void set(int x, int y, int value) {
-        grid[x][y].set(value);
+        int index = y * cols + x;
+        boolean wasFilled = colours[index] != 0;
+        if (colours[index] == (byte) value) return;
+        begin();
+        colours[index] = (byte) value;
+        dirty[index >>> 6] |= 1L << index;
+        if (value == 0) {
+            occupied[index >>> 6] &= ~(1L << index);
+            if (wasFilled) {
+                rowCounts[y]--;
+                columnCounts[x]--;
+                hash ^= Zobrist.cell(x, y);
+            }
+        } else {
+            occupied[index >>> 6] |= 1L << index;
+            if (!wasFilled) {
+                rowCounts[y]++;
+                columnCounts[x]++;
+                hash ^= Zobrist.cell(x, y);
+                touch(x, y, x, y);
+            }
+        }
+        commit();
     }
 
     /**
      * Get the value represented at the given x and y index within the grid
      * @param x column
      * @param y row
-     * @return the value
+     * @return the value, or -1 if there is no such block
      */
     public int get(int x, int y) {
-        try {
-            // Get the value held in the property at the x and y index provided
-            return grid[x][y].get();
-        } catch (ArrayIndexOutOfBoundsException e) {
+        if (x < 0 || y < 0 || x >= cols || y >= rows) {
             // No such index
             return -1;
         }
+        return colours[y * cols + x];
     }
 
     /**
@@ -103,22 +273,19 @@ public class Grid {
     /**
      * Takes a GamePiece with a given x and y of the grid will return true or false if that piece can be played
      * @param piece game piece
-     * @param posX  x
-     * @param posY  y
+     * @param posX  column of the left of the piece
+     * @param posY  row of the top of the piece
      * @return true if the piece can be played
      */
     public boolean canPlayPiece(GamePiece piece, int posX, int posY) {
-        int[][] blocks = piece.getBlocks();
-        // Loop through every part of the game piece
-        for (int x = 0; x < blocks.length; x++) {
-            for (int y = 0; y < blocks[x].length; y++) {
-                int value = blocks[x][y];
-                // If there isn't a block, then ignore
-                if (value == 0) continue;
-                int gridValue = get(x + posX, y + posY);
-                if (gridValue != 0) {
-                    return false;
-                }
+        // The bounding box of the piece has to be inside the grid
+        if (posX < 0 || posY < 0 || posX + piece.getWidth() > cols || posY + piece.getHeight() > rows) {
+            return false;
+        }
+        // Compare each row of the piece against the matching row of the grid
+        for (int y = 0; y < piece.getHeight(); y++) {
+            if ((rowBits(posY + y) & (piece.getRowMask(y) << posX)) != 0) {
+                return false;
             }
         }
         return true;
@@ -127,34 +294,300 @@ public class Grid {
     /**
      * Takes a GamePiece with a given x and y of the grid will place that piece in the grid
      * @param piece game piece
-     * @param posX  x
-     * @param posY  y
+     * @param posX  column of the left of the piece
+     * @param posY  row of the top of the piece
      * @return true if piece is played
      */
     public boolean playPiece(GamePiece piece, int posX, int posY) {
         if (!canPlayPiece(piece, posX, posY)) {
             return false;
         }
-        int[][] blocks = piece.getBlocks();
-        // Loop through every part of the game piece
-        for (int x = 0; x < blocks.length; x++) {
-            for (int y = 0; y < blocks[x].length; y++) {
-                int value = blocks[x][y];
-                // If there isn't a block, then ignore
-                if (value == 0) continue;
-                set(x + posX, y + posY, value);
-            }
+        begin();
+        for (int y = 0; y < piece.getHeight(); y++) {
+            orRow(occupied, posY + y, piece.getRowMask(y) << posX);
+            orRow(dirty, posY + y, piece.getRowMask(y) << posX);
+        }
+        // Fill in the colour plane for every block of the game piece
+        int value = piece.getValue();
+        for (int cell = 0; cell < piece.getCellCount(); cell++) {
+            int x = posX + piece.getCellX(cell);
+            int y = posY + piece.getCellY(cell);
+            colours[y * cols + x] = (byte) value;
+            rowCounts[y]++;
+            columnCounts[x]++;
+            hash ^= Zobrist.cell(x, y);
         }
+        touch(posX, posY, posX + piece.getWidth() - 1, posY + piece.getHeight() - 1);
+        commit();
         return true;
     }
 
+    /**
+     * Check whether every block in the given row is filled
+     * @param y row
+     * @return true if the row is full
+     */
+    public boolean isRowFull(int y) {
+        return rowCounts[y] == cols;
+    }
+
+    /**
+     * Check whether every block in the given column is filled
+     * @param x column
+     * @return true if the column is full
+     */
+    public boolean isColumnFull(int x) {
+        return columnCounts[x] == rows;
+    }
+
+    /**
+     * Get every full row of the grid as a mask
+     * @return mask with bit y set if row y is full
+     */
+    public long getFullRows() {
+        return fullRows(0, rows - 1);
+    }
+
+    /**
+     * Get every full column of the grid as a mask
+     * @return mask with bit x set if column x is full
+     */
+    public long getFullColumns() {
+        return fullColumns(0, cols - 1);
+    }
+
+    /**
+     * Clear every full line crossing the area touched since the last clear. Only those rows and columns are checked,
+     * since no other line can have become full.
+     * @return number of lines cleared
+     */
+    public int clearFullLines() {
+        long fullRows = fullRows(touchedTop, touchedBottom);
+        long fullColumns = fullColumns(touchedLeft, touchedRight);
+        clearLines(fullRows, fullColumns);
+        return Long.bitCount(fullRows) + Long.bitCount(fullColumns);
+    }
+
+    /**
+     * Empty every block in the given rows and columns
+     * @param fullRows    mask of rows to clear
+     * @param fullColumns mask of columns to clear
+     * @return number of distinct blocks cleared
+     */
+    public int clearLines(long fullRows, long fullColumns) {
+        Arrays.fill(cleared, 0);
+        clearedBlocks = 0;
+        resetTouched();
+        begin();
+        if (fullColumns == 0) {
+            // Only whole rows go, so only visit those
+            for (long remaining = fullRows; remaining != 0; remaining &= remaining - 1) {
+                int y = Long.numberOfTrailingZeros(remaining);
+                emptyRow(y, fullRow);
+            }
+        } else {
+            for (int y = 0; y < rows; y++) {
+                // The whole row goes if it is full, otherwise only the blocks in full columns
+                emptyRow(y, (fullRows & (1L << y)) != 0 ? fullRow : fullColumns);
+            }
+        }
+        commit();
+        return clearedBlocks;
+    }
+
+    /**
+     * Get the number of blocks emptied by the last line clear
+     * @return number of blocks
+     */
+    public int getClearedBlocks() {
+        return clearedBlocks;
+    }
+
+    /**
+     * Get the blocks emptied by the last line clear. Bit (y * cols + x) is set if the block at x and y was cleared.
+     * @return cleared blocks
+     */
+    public BitSet getClearedCells() {
+        return BitSet.valueOf(cleared);
+    }
+
+    /**
+     * Get the blocks emptied by the last line clear as the bitboard itself, without copying. Must not be modified.
+     * @return cleared blocks, bit (y * cols + x) set for the block at x and y
+     */
+    long[] getClearedWords() {
+        return cleared;
+    }
+
+    /**
+     * Get the occupancy bitboard itself, without copying. Must not be modified.
+     * @return bitboard with bit (y * cols + x) set when the block at x and y is filled
+     */
+    long[] getOccupiedWords() {
+        return occupied;
+    }
+
     /**
      * Remove all blocks on grid
      */
     public void clean() {
-        for (int x = 0; x < this.cols; x++) {
-            for (int y = 0; y < this.rows; y++)
-                this.grid[x][y].set(0);
+        begin();
+        for (int word = 0; word < occupied.length; word++) {
+            dirty[word] |= occupied[word];
+            occupied[word] = 0;
+        }
+        Arrays.fill(colours, (byte) 0);
+        Arrays.fill(rowCounts, 0);
+        Arrays.fill(columnCounts, 0);
+        hash = 0;
+        resetTouched();
+        commit();
+    }
+
+    /**
+     * Get the Zobrist hash of the occupancy. Grids with the same blocks filled have the same hash, whatever their
+     * colours and however they were filled.
+     * @return hash
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the whole occupancy bitboard of a grid of at most 64 blocks
+     * @return bitboard with bit (y * cols + x) set when the block at x and y is filled
+     */
+    public long getOccupancy() {
+        if (occupied.length != 1) {
+            throw new IllegalStateException("Grid of " + cols + " x " + rows + " does not fit in one word");
+        }
+        return occupied[0];
+    }
+
+    /**
+     * Get the occupancy of a single row
+     * @param y row
+     * @return mask with bit x set if the block at x is filled
+     */
+    public long rowBits(int y) {
+        int offset = y * cols;
+        int word = offset >>> 6;
+        int bit = offset & 63;
+        long bits = occupied[word] >>> bit;
+        // The row continues into the next word
+        if (bit + cols > 64) {
+            bits |= occupied[word + 1] << (64 - bit);
+        }
+        return bits & fullRow;
+    }
+
+    /**
+     * Set the given blocks of a row in a bitboard
+     * @param words bitboard to update
+     * @param y     row
+     * @param bits  mask of blocks to set
+     */
+    private void orRow(long[] words, int y, long bits) {
+        int offset = y * cols;
+        int word = offset >>> 6;
+        int bit = offset & 63;
+        words[word] |= bits << bit;
+        if (bit + cols > 64) {
+            words[word + 1] |= bits >>> (64 - bit);
+        }
+    }
+
+    /**
+     * Unset the given blocks of a row in a bitboard
+     * @param words bitboard to update
+     * @param y     row
+     * @param bits  mask of blocks to unset
+     */
+    private void andNotRow(long[] words, int y, long bits) {
+        int offset = y * cols;
+        int word = offset >>> 6;
+        int bit = offset & 63;
+        words[word] &= ~(bits << bit);
+        if (bit + cols > 64) {
+            words[word + 1] &= ~(bits >>> (64 - bit));
+        }
+    }
+
+    /**
+     * Empty the filled blocks of a row that are in the given mask, recording them as cleared
+     * @param y    row
+     * @param bits mask of blocks to empty
+     */
+    private void emptyRow(int y, long bits) {
+        bits &= rowBits(y);
+        if (bits == 0) return;
+        int count = Long.bitCount(bits);
+        clearedBlocks += count;
+        rowCounts[y] -= count;
+        andNotRow(occupied, y, bits);
+        orRow(cleared, y, bits);
+        orRow(dirty, y, bits);
+        for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            int x = Long.numberOfTrailingZeros(remaining);
+            columnCounts[x]--;
+            colours[y * cols + x] = 0;
+            hash ^= Zobrist.cell(x, y);
         }
     }
+
+    /**
+     * Find the full rows between two rows
+     * @param top    first row
+     * @param bottom last row
+     * @return mask with bit y set if row y is full
+     */
+    private long fullRows(int top, int bottom) {
+        long full = 0;
+        for (int y = top; y <= bottom; y++) {
+            if (rowCounts[y] == cols) {
+                full |= 1L << y;
+            }
+        }
+        return full;
+    }
+
+    /**
+     * Find the full columns between two columns
+     * @param left  first column
+     * @param right last column
+     * @return mask with bit x set if column x is full
+     */
+    private long fullColumns(int left, int right) {
+        long full = 0;
+        for (int x = left; x <= right; x++) {
+            if (columnCounts[x] == rows) {
+                full |= 1L << x;
+            }
+        }
+        return full;
+    }
+
+    /**
+     * Grow the area touched since the last clear to include the given area
+     * @param left   first column
+     * @param top    first row
+     * @param right  last column
+     * @param bottom last row
+     */
+    private void touch(int left, int top, int right, int bottom) {
+        touchedLeft = Math.min(touchedLeft, left);
+        touchedTop = Math.min(touchedTop, top);
+        touchedRight = Math.max(touchedRight, right);
+        touchedBottom = Math.max(touchedBottom, bottom);
+    }
+
+    /**
+     * Forget the area touched since the last clear
+     */
+    private void resetTouched() {
+        touchedLeft = cols;
+        touchedTop = rows;
+        touchedRight = -1;
+        touchedBottom = -1;
+    }
 }
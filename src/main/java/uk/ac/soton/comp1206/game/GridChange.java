@@ -0,0 +1,91 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.BitSet;
+
+/**
+ * An immutable set of changes made to a Grid in one transaction: which blocks changed, and the value of every block
+ * once the transaction was committed. It can safely be handed to another thread, such as the JavaFX thread.
+ */
+public final class GridChange {
+    /**
+     * Number of columns in the grid
+     */
+    private final int cols;
+    /**
+     * Changed blocks, bit (y * cols + x) set for the block at x and y
+     */
+    private final BitSet cells;
+    /**
+     * Value of every block after the change, indexed by y * cols + x
+     */
+    private final byte[] values;
+
+    /**
+     * Create a change set, should only be called by the grid
+     * @param cols   number of columns in the grid
+     * @param cells  changed blocks, owned by the change set from now on
+     * @param values value of every block, owned by the change set from now on
+     */
+    GridChange(int cols, BitSet cells, byte[] values) {
+        this.cols = cols;
+        this.cells = cells;
+        this.values = values;
+    }
+
+    /**
+     * Get the blocks that changed. Bit (y * cols + x) is set if the block at x and y changed.
+     * @return a copy of the changed blocks
+     */
+    public BitSet getCells() {
+        return (BitSet) cells.clone();
+    }
+
+    /**
+     * Get the number of blocks that changed
+     * @return number of blocks
+     */
+    public int size() {
+        return cells.cardinality();
+    }
+
+    /**
+     * Get the index of the next changed block, in the order bit (y * cols + x)
+     * @param from index to start looking from
+     * @return index of the next changed block, or -1 if there is none
+     */
+    public int nextCell(int from) {
+        return cells.nextSetBit(from);
+    }
+
+    /**
+     * Get the column of a block index
+     * @param cell block index
+     * @return column
+     */
+    public int getX(int cell) {
+        return cell % cols;
+    }
+
+    /**
+     * Get the row of a block index
+     * @param cell block index
+     * @return row
+     */
+    public int getY(int cell) {
+        return cell / cols;
+    }
+
+    /**
+     * Get the value of a block once the change was made
+     * @param cell block index
+     * @return the value
+     */
+    public int getValue(int cell) {
+        return values[cell];
+    }
+
+    @Override
+    public String toString() {
+        return "GridChange" + cells;
+    }
+}
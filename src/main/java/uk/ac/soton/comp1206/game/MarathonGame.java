@@ -0,0 +1,83 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Random;
+
+/**
+ * A game on a board with no edges, a SparseGrid, that can grow as large as the player likes. Lines are windows of
+ * SparseGrid.TILE blocks, and scoring, the multiplier, levels, lives and the countdown are the rules of every BaseGame.
+ *
+ * Since there is always room for a piece somewhere, no placement is ever missing. A marathon has no fixed grid, so it
+ * has none of the grid's placement indexes, and cannot be recorded or have its state captured, since both describe a
+ * grid block by block.
+ */
+public class MarathonGame extends BaseGame {
+    private static final Logger logger = LogManager.getLogger(MarathonGame.class);
+    /**
+     * The board
+     */
+    private final SparseGrid board = new SparseGrid();
+
+    /**
+     * Create a new marathon game
+     */
+    public MarathonGame() {
+        this(TimingWheel.shared(), PieceGenerator.uniform(new Random().nextLong()));
+    }
+
+    /**
+     * Create a new marathon game counting down on the given timing wheel, whose pieces are dealt by the given generator
+     * @param timer     timing wheel to run the countdown on
+     * @param generator generator to deal pieces, not shared with any other game
+     */
+    public MarathonGame(TimingWheel timer, PieceGenerator generator) {
+        super(timer, generator);
+    }
+
+    /**
+     * Get the board. Should only be read from inside a command, since the game changes it from whichever thread is
+     * running its commands.
+     * @return board
+     */
+    public SparseGrid getBoard() {
+        return board;
+    }
+
+    @Override
+    protected void placePiece(int x, int y) {
+        if (board.playPiece(currentPiece, x, y)) {
+            piecePlaced();
+        } else {
+            playSound("fail.wav");
+        }
+    }
+
+    @Override
+    public void afterPiece() {
+        int linesCleared = board.clearFullLines();
+        linesCleared(linesCleared, board.getClearedBlocks());
+        if (linesCleared > 0) {
+            // The cleared blocks have no place in a LineCleared event, which numbers them within a fixed grid
+            playSound("clear.wav");
+        }
+    }
+
+    @Override
+    protected void cleanBoard() {
+        board.clean();
+        logger.info("Marathon board emptied");
+    }
+
+    @Override
+    public boolean canPlaceCurrentPiece(int x, int y) {
+        GamePiece piece = currentPiece;
+        return piece != null && board.canPlayPiece(piece, x - piece.getPivotX(), y - piece.getPivotY());
+    }
+
+    @Override
+    public boolean hasLegalPlacement() {
+        return true;
+    }
+}
@@ -0,0 +1,19 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * What a Game does as soon as neither the current piece nor the next piece can be placed anywhere on the board
+ */
+public enum NoPlacementPenalty {
+    /**
+     * Nothing, the player loses a life once the countdown runs out as usual
+     */
+    WAIT,
+    /**
+     * Lose a life and move on to the next piece straight away, as if the countdown had run out
+     */
+    LOSE_LIFE,
+    /**
+     * End the game straight away
+     */
+    END_GAME
+}
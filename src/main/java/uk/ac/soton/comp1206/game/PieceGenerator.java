@@ -0,0 +1,308 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+
+/**
+ * Deals out the pieces of a game from a seeded SplitMix64 generator, so the same seed always deals the same pieces.
+ * Pieces come from the piece set that was active when the generator was created.
+ *
+ * Pieces are drawn either independently, each with a weight (all equal by default), or from a bag holding one of each
+ * piece that is refilled once empty, so that no piece is ever more than two bags away. Every rotation is equally
+ * likely in both.
+ *
+ * Upcoming pieces are drawn ahead into a ring buffer, a whole buffer at a time, and handed out from there. Each piece
+ * takes a single random long, split between the rotation and the piece, and weighted pieces are looked up in a table
+ * with an entry per unit of weight rather than searched for. Drawing allocates nothing, since pieces come from the
+ * shared table of GamePiece. Along with each buffered piece the generator keeps the state it was drawn from, so its
+ * state can still be captured and restored as if nothing had been drawn ahead.
+ */
+public class PieceGenerator {
+    /**
+     * Number of pieces drawn ahead, a power of two
+     */
+    public static final int BUFFER = 16;
+    /**
+     * Largest total of the weights
+     */
+    public static final int MAX_TOTAL_WEIGHT = 1 << 16;
+    /**
+     * Pieces to deal
+     */
+    private final PieceSet set;
+    /**
+     * Bag holding one of every piece
+     */
+    private final int fullBag;
+    /**
+     * Seed the generator started from
+     */
+    private final long seed;
+    /**
+     * Whether pieces are drawn from a bag rather than by weight
+     */
+    private final boolean bag;
+    /**
+     * Weight of each piece, or null when drawing from a bag
+     */
+    private final int[] weights;
+    /**
+     * Piece number for each unit of weight, or null when drawing from a bag
+     */
+    private final byte[] table;
+    /**
+     * Source of every random choice
+     */
+    private final SplitMix64 random;
+    /**
+     * Buffered pieces
+     */
+    private final GamePiece[] upcoming = new GamePiece[BUFFER];
+    /**
+     * Random state each buffered piece was drawn from
+     */
+    private final long[] states = new long[BUFFER];
+    /**
+     * Bag each buffered piece was drawn from
+     */
+    private final int[] bags = new int[BUFFER];
+    /**
+     * Index of the next piece to hand out
+     */
+    private int head = 0;
+    /**
+     * Number of buffered pieces
+     */
+    private int size = 0;
+    /**
+     * Pieces left in the current bag, bit i set if piece i is still in it
+     */
+    private int remaining;
+
+    /**
+     * Create a generator
+     * @param set     pieces to deal
+     * @param seed    seed for the random number generator
+     * @param bag     whether pieces are drawn from a bag
+     * @param weights weight of each piece when not drawing from a bag
+     */
+    private PieceGenerator(PieceSet set, long seed, boolean bag, int[] weights) {
+        this.set = set;
+        this.fullBag = (1 << set.size()) - 1;
+        this.remaining = fullBag;
+        this.seed = seed;
+        this.bag = bag;
+        this.random = new SplitMix64(seed);
+        if (bag) {
+            this.weights = null;
+            this.table = null;
+            return;
+        }
+        if (weights.length != set.size()) {
+            throw new IllegalArgumentException("Expected " + set.size() + " weights, got " + weights.length);
+        }
+        this.weights = weights.clone();
+        long total = 0;
+        for (int piece = 0; piece < weights.length; piece++) {
+            if (weights[piece] < 0) {
+                throw new IllegalArgumentException("Negative weight for piece " + piece);
+            }
+            total += weights[piece];
+        }
+        if (total == 0 || total > MAX_TOTAL_WEIGHT) {
+            throw new IllegalArgumentException("Total weight must be from 1 to " + MAX_TOTAL_WEIGHT + ": " + total);
+        }
+        this.table = new byte[(int) total];
+        int unit = 0;
+        for (int piece = 0; piece < weights.length; piece++) {
+            Arrays.fill(table, unit, unit + weights[piece], (byte) piece);
+            unit += weights[piece];
+        }
+    }
+
+    /**
+     * Create a generator drawing every piece equally often
+     * @param seed seed for the random number generator
+     * @return the generator
+     */
+    public static PieceGenerator uniform(long seed) {
+        var set = PieceSet.getActive();
+        var weights = new int[set.size()];
+        Arrays.fill(weights, 1);
+        return new PieceGenerator(set, seed, false, weights);
+    }
+
+    /**
+     * Create a generator drawing each piece in proportion to its weight
+     * @param seed    seed for the random number generator
+     * @param weights weight of each piece, by piece number, adding up to at most MAX_TOTAL_WEIGHT
+     * @return the generator
+     */
+    public static PieceGenerator weighted(long seed, int... weights) {
+        return new PieceGenerator(PieceSet.getActive(), seed, false, weights);
+    }
+
+    /**
+     * Create a generator drawing from a bag of one of each piece
+     * @param seed seed for the random number generator
+     * @return the generator
+     */
+    public static PieceGenerator bag(long seed) {
+        return new PieceGenerator(PieceSet.getActive(), seed, true, null);
+    }
+
+    /**
+     * Create a new generator dealing the same pieces the same way as this one, from the start
+     * @param seed seed for the new generator
+     * @return the generator
+     */
+    public PieceGenerator withSeed(long seed) {
+        return new PieceGenerator(set, seed, bag, weights);
+    }
+
+    /**
+     * Hand out the next piece
+     * @return the piece
+     */
+    public GamePiece next() {
+        if (size == 0) fill();
+        GamePiece piece = upcoming[head];
+        head = (head + 1) & (BUFFER - 1);
+        size--;
+        return piece;
+    }
+
+    /**
+     * Hand out the next piece without drawing any ahead, so that getState and getBag then give the state after exactly
+     * this piece. Meant for games whose generator state is kept elsewhere and restored before every piece.
+     * @return the piece
+     */
+    public GamePiece nextUnbuffered() {
+        if (size == 0) {
+            draw(head);
+            size = 1;
+        }
+        return next();
+    }
+
+    /**
+     * Look at an upcoming piece without handing it out
+     * @param ahead how many pieces ahead to look, 0 for the one next will return
+     * @return the piece
+     */
+    public GamePiece peek(int ahead) {
+        if (ahead < 0 || ahead >= BUFFER) {
+            throw new IndexOutOfBoundsException("Can only look up to " + (BUFFER - 1) + " pieces ahead: " + ahead);
+        }
+        if (size <= ahead) fill();
+        return upcoming[(head + ahead) & (BUFFER - 1)];
+    }
+
+    /**
+     * Get the seed the generator started from
+     * @return seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the set of pieces dealt
+     * @return piece set
+     */
+    public PieceSet getPieceSet() {
+        return set;
+    }
+
+    /**
+     * Check whether pieces are drawn from a bag
+     * @return true for a bag, false for weights
+     */
+    public boolean isBag() {
+        return bag;
+    }
+
+    /**
+     * Get the weight of each piece
+     * @return weights by piece number, or null when drawing from a bag
+     */
+    public int[] getWeights() {
+        return weights == null ? null : weights.clone();
+    }
+
+    /**
+     * Get the random state the next piece will be drawn from, ignoring pieces drawn ahead
+     * @return state
+     */
+    public long getState() {
+        return size > 0 ? states[head] : random.getState();
+    }
+
+    /**
+     * Get the pieces left in the bag the next piece will be drawn from, ignoring pieces drawn ahead
+     * @return bit i set if piece i is still in the bag
+     */
+    public int getBag() {
+        return size > 0 ? bags[head] : remaining;
+    }
+
+    /**
+     * Restore a state read earlier with getState and getBag, dropping any pieces drawn ahead
+     * @param state random state
+     * @param bag   pieces left in the bag
+     */
+    public void setState(long state, int bag) {
+        random.setState(state);
+        remaining = bag;
+        size = 0;
+    }
+
+    /**
+     * Draw pieces into every free slot of the buffer
+     */
+    private void fill() {
+        for (int slot = (head + size) & (BUFFER - 1); size < BUFFER; slot = (slot + 1) & (BUFFER - 1), size++) {
+            draw(slot);
+        }
+    }
+
+    /**
+     * Draw one piece into a slot of the buffer, remembering the state it was drawn from
+     * @param slot slot to fill
+     */
+    private void draw(int slot) {
+        states[slot] = random.getState();
+        bags[slot] = remaining;
+        long bits = random.nextLong();
+        // The top half picks the piece and the bottom bits the rotation
+        int piece = bag ? drawFromBag(bits >>> 32) : table[scale(bits >>> 32, table.length)];
+        upcoming[slot] = set.getPiece(piece, (int) bits);
+    }
+
+    /**
+     * Scale 32 random bits down to below a bound, by multiplying rather than dividing. The bias this leaves is below
+     * one in ten thousand for any bound used here.
+     * @param bits  random bits, in the low half
+     * @param bound upper bound, exclusive
+     * @return a number from 0 to bound - 1
+     */
+    private static int scale(long bits, int bound) {
+        return (int) ((bits * bound) >>> 32);
+    }
+
+    /**
+     * Take a piece out of the bag, refilling it first if it is empty
+     * @param bits 32 random bits
+     * @return piece number
+     */
+    private int drawFromBag(long bits) {
+        if (remaining == 0) remaining = fullBag;
+        // Pick the nth piece still in the bag
+        int left = remaining;
+        for (int skip = scale(bits, Integer.bitCount(left)); skip > 0; skip--) {
+            left &= left - 1;
+        }
+        int piece = Integer.numberOfTrailingZeros(left);
+        remaining &= ~(1 << piece);
+        return piece;
+    }
+}
@@ -0,0 +1,326 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * A set of pieces to play with, read from a text file and compiled into a table of every piece in every rotation, so
+ * the game only ever looks pieces up.
+ *
+ * The game plays with the active set. Unless another set is made active, it is the file named by the tetrecs.pieces
+ * system property if there is one, or otherwise the standard pieces bundled with the game. Themed events can so be
+ * given their own pieces without rebuilding the game. The format is described in the bundled pieces/standard.txt.
+ */
+public final class PieceSet {
+    private static final Logger logger = LogManager.getLogger(PieceSet.class);
+    /**
+     * System property naming a piece set file to play with
+     */
+    public static final String PROPERTY = "tetrecs.pieces";
+    /**
+     * Largest width and height of a piece drawing
+     */
+    public static final int MAX_SIZE = 16;
+    /**
+     * Largest number of pieces in a set, so that a bag of them fits in an int
+     */
+    public static final int MAX_PIECES = 31;
+    /**
+     * Largest colour of a piece
+     */
+    public static final int MAX_COLOUR = 15;
+    /**
+     * Resource holding the standard pieces
+     */
+    private static final String STANDARD = "/pieces/standard.txt";
+    /**
+     * The standard pieces, once loaded
+     */
+    private static PieceSet standard;
+    /**
+     * Set the game plays with, once chosen
+     */
+    private static volatile PieceSet active;
+    /**
+     * Name of the set
+     */
+    private final String name;
+    /**
+     * Every piece in every rotation, by piece number and then rotation
+     */
+    private final GamePiece[][] table;
+    /**
+     * Width and height of the largest piece
+     */
+    private final int maxSize;
+
+    /**
+     * Create a set from its compiled pieces
+     * @param name  name of the set
+     * @param table every piece in every rotation
+     */
+    private PieceSet(String name, GamePiece[][] table) {
+        this.name = name;
+        this.table = table;
+        int largest = 0;
+        for (GamePiece[] rotations : table) {
+            largest = Math.max(largest, Math.max(rotations[0].getWidth(), rotations[0].getHeight()));
+        }
+        this.maxSize = largest;
+    }
+
+    /**
+     * Get the set the game plays with, choosing it the first time
+     * @return the active set
+     */
+    public static PieceSet getActive() {
+        PieceSet set = active;
+        if (set == null) {
+            synchronized (PieceSet.class) {
+                if (active == null) {
+                    active = choose();
+                }
+                set = active;
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Play with a different set from now on. Games already running should be finished first.
+     * @param set set to play with
+     */
+    public static void setActive(PieceSet set) {
+        logger.info("Playing with piece set " + set);
+        active = set;
+    }
+
+    /**
+     * Get the standard pieces bundled with the game
+     * @return the standard set
+     */
+    public static synchronized PieceSet standard() {
+        if (standard == null) {
+            var stream = PieceSet.class.getResourceAsStream(STANDARD);
+            if (stream == null) {
+                throw new IllegalStateException("Missing resource " + STANDARD);
+            }
+            try (var reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+                standard = parse(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot load the standard pieces", e);
+            }
+        }
+        return standard;
+    }
+
+    /**
+     * Load a piece set from a file
+     * @param file piece set file
+     * @return the set
+     * @throws IOException if the file cannot be read or is not a valid piece set
+     */
+    public static PieceSet load(Path file) throws IOException {
+        try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Read and compile a piece set
+     * @param in piece set text
+     * @return the set
+     * @throws IOException if the text cannot be read or is not a valid piece set
+     */
+    public static PieceSet parse(Reader in) throws IOException {
+        var reader = new BufferedReader(in);
+        String name = null;
+        var pieces = new ArrayList<GamePiece[]>();
+        String pieceName = null;
+        int colour = 0;
+        var rows = new ArrayList<String>();
+        int number = 0;
+        String line;
+        do {
+            line = reader.readLine();
+            number++;
+            String text = line == null ? "" : line.strip();
+            if (text.startsWith("#")) continue;
+            boolean shapeRow = !text.isEmpty() && text.chars().allMatch(c -> c == 'X' || c == 'O' || c == '.');
+            if (pieceName != null && !rows.isEmpty() && !shapeRow) {
+                // The rows of the current piece have ended
+                pieces.add(compile(pieceName, pieces.size(), colour, rows, number - 1));
+                pieceName = null;
+                rows.clear();
+            }
+            if (text.isEmpty()) continue;
+            if (shapeRow) {
+                if (pieceName == null) throw error(number, "Piece drawn before it is named");
+                rows.add(text);
+            } else if (text.startsWith("set ")) {
+                if (name != null) throw error(number, "Set named twice");
+                name = text.substring(4).strip();
+            } else if (text.startsWith("piece ")) {
+                if (pieceName != null) throw error(number, "Piece " + pieceName + " is not drawn");
+                if (pieces.size() == MAX_PIECES) throw error(number, "More than " + MAX_PIECES + " pieces");
+                pieceName = text.substring(6).strip();
+                colour = pieces.size() % MAX_COLOUR + 1;
+            } else if (text.startsWith("colour ") && pieceName != null && rows.isEmpty()) {
+                try {
+                    colour = Integer.parseInt(text.substring(7).strip());
+                } catch (NumberFormatException e) {
+                    throw error(number, "Not a colour: " + text);
+                }
+                if (colour < 1 || colour > MAX_COLOUR) throw error(number, "Colour out of range: " + colour);
+            } else {
+                throw error(number, "Unexpected line: " + text);
+            }
+        } while (line != null);
+
+        if (pieceName != null) throw error(number, "Piece " + pieceName + " is not drawn");
+        if (name == null || name.isEmpty()) throw error(number, "Set has no name");
+        if (pieces.isEmpty()) throw error(number, "Set has no pieces");
+        return new PieceSet(name, pieces.toArray(new GamePiece[0][]));
+    }
+
+    /**
+     * Compile one piece into all of its rotations, as the offset of each block from its pivot
+     * @param name   name of the piece
+     * @param piece  number of the piece
+     * @param colour colour of the piece
+     * @param rows   drawing of the piece, row by row
+     * @param line   line number of the last row of the drawing
+     * @return the piece in each rotation
+     * @throws IOException if the drawing is not valid
+     */
+    private static GamePiece[] compile(String name, int piece, int colour, ArrayList<String> rows, int line)
+            throws IOException {
+        int width = rows.get(0).length();
+        int height = rows.size();
+        if (width > MAX_SIZE || height > MAX_SIZE) {
+            throw error(line, "Piece " + name + " must be drawn in a grid up to " + MAX_SIZE + "x" + MAX_SIZE);
+        }
+        int pivotX = -1, pivotY = -1, blocks = 0;
+        for (int y = 0; y < height; y++) {
+            String row = rows.get(y);
+            if (row.length() != width) throw error(line, "Piece " + name + " has rows of different lengths");
+            for (int x = 0; x < width; x++) {
+                if (row.charAt(x) == 'O') {
+                    if (pivotX >= 0) throw error(line, "Piece " + name + " has more than one pivot");
+                    pivotX = x;
+                    pivotY = y;
+                }
+                if (row.charAt(x) != '.') blocks++;
+            }
+        }
+        if (pivotX < 0) {
+            // Without a marked pivot, the piece turns about the middle of its grid
+            if (width % 2 == 0 || height % 2 == 0) {
+                throw error(line, "Piece " + name + " must mark its pivot with O, or be drawn in an odd sized grid");
+            }
+            pivotX = width / 2;
+            pivotY = height / 2;
+            if (rows.get(pivotY).charAt(pivotX) != 'X') {
+                throw error(line, "Piece " + name + " must fill its middle block");
+            }
+        }
+        var dx = new int[blocks];
+        var dy = new int[blocks];
+        int block = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (rows.get(y).charAt(x) != '.') {
+                    dx[block] = x - pivotX;
+                    dy[block] = y - pivotY;
+                    block++;
+                }
+            }
+        }
+        return GamePiece.createRotations(name, piece, dx, dy, colour);
+    }
+
+    /**
+     * Create an error about a line of a piece set
+     * @param line    line number
+     * @param message what is wrong
+     * @return the error
+     */
+    private static IOException error(int line, String message) {
+        return new IOException("Line " + line + ": " + message);
+    }
+
+    /**
+     * Choose the set to play with when none has been made active
+     * @return the set named by the system property, or the standard set
+     */
+    private static PieceSet choose() {
+        String file = System.getProperty(PROPERTY);
+        if (file == null || file.isBlank()) {
+            return standard();
+        }
+        try {
+            PieceSet set = load(Path.of(file));
+            logger.info("Loaded piece set " + set + " from " + file);
+            return set;
+        } catch (IOException e) {
+            logger.error("Cannot load piece set " + file + ", using the standard pieces", e);
+            return standard();
+        }
+    }
+
+    /**
+     * Get a piece in a rotation
+     * @param piece    piece number
+     * @param rotation number of times to rotate
+     * @return the piece
+     */
+    public GamePiece getPiece(int piece, int rotation) {
+        if (piece < 0 || piece >= table.length) {
+            // Not a valid piece number
+            throw new IndexOutOfBoundsException("No such piece: " + piece);
+        }
+        return table[piece][rotation & (GamePiece.ROTATIONS - 1)];
+    }
+
+    /**
+     * Get the number of pieces in the set
+     * @return number of pieces
+     */
+    public int size() {
+        return table.length;
+    }
+
+    /**
+     * Get the largest width or height of a piece, so that every piece in every rotation fits in a square this big
+     * @return size in blocks
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the name of the set
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the string representation of this set
+     * @return the name and number of pieces
+     */
+    public String toString() {
+        return name + " (" + table.length + " pieces)";
+    }
+}
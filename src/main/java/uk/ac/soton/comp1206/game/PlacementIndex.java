@@ -0,0 +1,224 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+
+/**
+ * Index of every legal placement of one piece on a Grid, in each of its rotations. A placement is named by the block
+ * that would be clicked to make it, which is where the pivot of the piece goes, so only placements with the pivot on
+ * the board are indexed. Every piece has a block at its pivot, so no legal placement is missed.
+ *
+ * The index is a bitset per rotation in the grid's cell order, so checking a placement is a single bit test. It is
+ * kept up to date incrementally: filling blocks can only rule out the placements covering them, and emptying blocks can
+ * only allow the placements covering them, so only those are looked at.
+ */
+public class PlacementIndex {
+    /**
+     * Grid being indexed
+     */
+    private final Grid grid;
+    /**
+     * Number of columns in the grid
+     */
+    private final int cols;
+    /**
+     * Number of rows in the grid
+     */
+    private final int rows;
+    /**
+     * Legal placements for each rotation, bit (y * cols + x) set if clicking x and y is legal
+     */
+    private final long[][] legal;
+    /**
+     * Number of legal placements in each rotation
+     */
+    private final int[] counts = new int[GamePiece.ROTATIONS];
+    /**
+     * Piece being indexed, in its starting rotation
+     */
+    private GamePiece piece;
+
+    /**
+     * Create an empty index for a grid
+     * @param grid grid to index
+     */
+    public PlacementIndex(Grid grid) {
+        this.grid = grid;
+        this.cols = grid.getCols();
+        this.rows = grid.getRows();
+        this.legal = new long[GamePiece.ROTATIONS][(cols * rows + 63) >>> 6];
+    }
+
+    /**
+     * Index a piece from scratch against the current grid
+     * @param piece piece to index, in any rotation
+     */
+    public void rebuild(GamePiece piece) {
+        this.piece = piece.rotate(-piece.getRotation());
+        reset();
+    }
+
+    /**
+     * Index the same piece from scratch again, for example after the whole grid changed
+     */
+    public void reset() {
+        if (piece == null) return;
+        for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+            long[] bits = legal[rotation];
+            Arrays.fill(bits, 0);
+            int count = 0;
+            GamePiece rotated = piece.rotate(rotation);
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < cols; x++) {
+                    if (grid.canPlayPiece(rotated, x - rotated.getPivotX(), y - rotated.getPivotY())) {
+                        int index = y * cols + x;
+                        bits[index >>> 6] |= 1L << index;
+                        count++;
+                    }
+                }
+            }
+            counts[rotation] = count;
+        }
+    }
+
+    /**
+     * Update the index after a piece was played. Only placements overlapping the new blocks can have become illegal.
+     * @param placed piece that was played
+     * @param posX   column of the left of the piece
+     * @param posY   row of the top of the piece
+     */
+    public void filled(GamePiece placed, int posX, int posY) {
+        if (piece == null) return;
+        for (int cell = 0; cell < placed.getCellCount(); cell++) {
+            int x = posX + placed.getCellX(cell);
+            int y = posY + placed.getCellY(cell);
+            for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                GamePiece rotated = piece.rotate(rotation);
+                int pivotX = x + rotated.getPivotX();
+                int pivotY = y + rotated.getPivotY();
+                // Every placement with one of its blocks on x and y is now blocked
+                for (int block = 0; block < rotated.getCellCount(); block++) {
+                    unset(rotation, pivotX - rotated.getCellX(block), pivotY - rotated.getCellY(block));
+                }
+            }
+        }
+    }
+
+    /**
+     * Update the index after blocks were emptied. Only placements overlapping those blocks can have become legal.
+     * @param cells emptied blocks, bit (y * cols + x) set for the block at x and y
+     */
+    public void emptied(long[] cells) {
+        if (piece == null) return;
+        for (int word = 0; word < cells.length; word++) {
+            for (long bits = cells[word]; bits != 0; bits &= bits - 1) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                int x = index % cols;
+                int y = index / cols;
+                for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                    GamePiece rotated = piece.rotate(rotation);
+                    int pivotX = x + rotated.getPivotX();
+                    int pivotY = y + rotated.getPivotY();
+                    for (int block = 0; block < rotated.getCellCount(); block++) {
+                        recheck(rotation, rotated, pivotX - rotated.getCellX(block), pivotY - rotated.getCellY(block));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether the piece can be placed by clicking a block in the given rotation
+     * @param x        column
+     * @param y        row
+     * @param rotation rotation of the piece
+     * @return true if the placement is legal
+     */
+    public boolean isLegal(int x, int y, int rotation) {
+        if (x < 0 || y < 0 || x >= cols || y >= rows) return false;
+        int index = y * cols + x;
+        return (legal[rotation & (GamePiece.ROTATIONS - 1)][index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Get the number of legal placements in one rotation
+     * @param rotation rotation of the piece
+     * @return number of placements
+     */
+    public int count(int rotation) {
+        return counts[rotation & (GamePiece.ROTATIONS - 1)];
+    }
+
+    /**
+     * Get the number of legal placements over all rotations
+     * @return number of placements
+     */
+    public int count() {
+        int count = 0;
+        for (int rotation : counts) {
+            count += rotation;
+        }
+        return count;
+    }
+
+    /**
+     * Check whether the piece cannot be placed anywhere in any rotation
+     * @return true if there is no legal placement
+     */
+    public boolean isEmpty() {
+        return count() == 0;
+    }
+
+    /**
+     * Get the legal placements of one rotation as a bitset, bit (y * cols + x) set if centring the piece on x and y is
+     * legal. The array is shared and must not be modified.
+     * @param rotation rotation of the piece
+     * @return legal placements
+     */
+    public long[] getPlacements(int rotation) {
+        return legal[rotation & (GamePiece.ROTATIONS - 1)];
+    }
+
+    /**
+     * Get the piece being indexed
+     * @return piece in its starting rotation, or null if none
+     */
+    public GamePiece getPiece() {
+        return piece;
+    }
+
+    /**
+     * Mark a placement as illegal
+     * @param rotation rotation of the piece
+     * @param x        column of the pivot
+     * @param y        row of the pivot
+     */
+    private void unset(int rotation, int x, int y) {
+        if (x < 0 || y < 0 || x >= cols || y >= rows) return;
+        int index = y * cols + x;
+        long bit = 1L << index;
+        long[] bits = legal[rotation];
+        if ((bits[index >>> 6] & bit) != 0) {
+            bits[index >>> 6] &= ~bit;
+            counts[rotation]--;
+        }
+    }
+
+    /**
+     * Check a placement that is not known to be legal against the grid again
+     * @param rotation rotation of the piece
+     * @param rotated  the piece in that rotation
+     * @param x        column of the pivot
+     * @param y        row of the pivot
+     */
+    private void recheck(int rotation, GamePiece rotated, int x, int y) {
+        if (x < 0 || y < 0 || x >= cols || y >= rows) return;
+        int index = y * cols + x;
+        long bit = 1L << index;
+        long[] bits = legal[rotation];
+        if ((bits[index >>> 6] & bit) == 0
+                && grid.canPlayPiece(rotated, x - rotated.getPivotX(), y - rotated.getPivotY())) {
+            bits[index >>> 6] |= bit;
+            counts[rotation]++;
+        }
+    }
+}
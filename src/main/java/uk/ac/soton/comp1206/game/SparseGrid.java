@@ -0,0 +1,216 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+
+/**
+ * A board with no fixed size, for marathon games. Only the parts of the board with something on them are stored, as
+ * 8 x 8 tiles each holding an occupancy bitboard and the values of its blocks, kept in a TileMap keyed by the
+ * position of the tile. Memory therefore grows with the area in use rather than with the extent of the board, and a
+ * tile is dropped again as soon as it is emptied.
+ *
+ * Since rows and columns never end, a line is a window of TILE blocks of one row or column, lined up with the tiles,
+ * and is cleared once every block in it is filled. Only the windows of the tiles the last piece touched are checked,
+ * each with a few bit operations on the tile's bitboard.
+ *
+ * Blocks can be anywhere from -LIMIT to LIMIT - 1 in either direction, which keeps every sum of a position and a piece
+ * offset well inside an int.
+ */
+public class SparseGrid {
+    /**
+     * Width and height of a tile, and the length of a line
+     */
+    public static final int TILE = 8;
+    /**
+     * Bound on the position of any block in either direction
+     */
+    public static final int LIMIT = 1 << 30;
+    /**
+     * Bits of the first column of a tile bitboard
+     */
+    private static final long FIRST_COLUMN = 0x0101010101010101L;
+    /**
+     * Bits of the first row of a tile bitboard
+     */
+    private static final long FIRST_ROW = 0xFFL;
+    /**
+     * Tiles with at least one block filled
+     */
+    private final TileMap tiles = new TileMap();
+    /**
+     * Keys of the tiles touched since the last clear
+     */
+    private long[] touched = new long[16];
+    /**
+     * Number of tiles touched since the last clear
+     */
+    private int touchedCount = 0;
+    /**
+     * Number of filled blocks
+     */
+    private int blocks = 0;
+    /**
+     * Number of blocks emptied by the last line clear
+     */
+    private int clearedBlocks = 0;
+
+    /**
+     * Get the value of a block
+     * @param x column
+     * @param y row
+     * @return the value, 0 if the block is empty
+     */
+    public int get(int x, int y) {
+        int slot = tiles.find(TileMap.key(x >> 3, y >> 3));
+        return slot < 0 ? 0 : tiles.valuesAt(slot)[(y & 7) * TILE + (x & 7)];
+    }
+
+    /**
+     * Check whether a piece can be played with the top left of its bounding box at the given position
+     * @param piece game piece
+     * @param posX  column of the left of the piece
+     * @param posY  row of the top of the piece
+     * @return true if every block the piece covers is empty
+     */
+    public boolean canPlayPiece(GamePiece piece, int posX, int posY) {
+        if (posX < -LIMIT || posY < -LIMIT || posX > LIMIT - piece.getWidth() || posY > LIMIT - piece.getHeight()) {
+            return false;
+        }
+        // Neighbouring blocks mostly share a tile, so the last one found is tried first
+        long lastKey = TileMap.EMPTY;
+        long tile = 0;
+        for (int cell = 0; cell < piece.getCellCount(); cell++) {
+            int x = posX + piece.getCellX(cell);
+            int y = posY + piece.getCellY(cell);
+            long key = TileMap.key(x >> 3, y >> 3);
+            if (key != lastKey) {
+                int slot = tiles.find(key);
+                tile = slot < 0 ? 0 : tiles.bitsAt(slot);
+                lastKey = key;
+            }
+            if ((tile & bit(x, y)) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Play a piece with the top left of its bounding box at the given position, if it fits
+     * @param piece game piece
+     * @param posX  column of the left of the piece
+     * @param posY  row of the top of the piece
+     * @return true if the piece was played
+     */
+    public boolean playPiece(GamePiece piece, int posX, int posY) {
+        if (!canPlayPiece(piece, posX, posY)) {
+            return false;
+        }
+        byte value = (byte) piece.getValue();
+        for (int cell = 0; cell < piece.getCellCount(); cell++) {
+            int x = posX + piece.getCellX(cell);
+            int y = posY + piece.getCellY(cell);
+            long key = TileMap.key(x >> 3, y >> 3);
+            int slot = tiles.findOrAdd(key);
+            tiles.setBits(slot, tiles.bitsAt(slot) | bit(x, y));
+            tiles.valuesAt(slot)[(y & 7) * TILE + (x & 7)] = value;
+            touch(key);
+        }
+        blocks += piece.getCellCount();
+        return true;
+    }
+
+    /**
+     * Clear every full line in the tiles touched since the last clear
+     * @return number of lines cleared
+     */
+    public int clearFullLines() {
+        int lines = 0;
+        clearedBlocks = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int slot = tiles.find(touched[i]);
+            if (slot < 0) continue;
+            long tile = tiles.bitsAt(slot);
+            // A column is full if its bit is set in all eight rows
+            long columns = tile & (tile >>> 32);
+            columns &= columns >>> 16;
+            columns &= columns >>> 8;
+            columns &= FIRST_ROW;
+            long rows = 0;
+            for (int y = 0; y < TILE; y++) {
+                if (((tile >>> (y * TILE)) & FIRST_ROW) == FIRST_ROW) rows |= FIRST_ROW << (y * TILE);
+            }
+            long cleared = rows | (columns * FIRST_COLUMN);
+            if (cleared == 0) continue;
+            lines += Long.bitCount(rows) / TILE + Long.bitCount(columns);
+            clearedBlocks += Long.bitCount(cleared);
+            byte[] values = tiles.valuesAt(slot);
+            for (long remaining = cleared; remaining != 0; remaining &= remaining - 1) {
+                values[Long.numberOfTrailingZeros(remaining)] = 0;
+            }
+            tile &= ~cleared;
+            if (tile == 0) {
+                tiles.remove(slot);
+            } else {
+                tiles.setBits(slot, tile);
+            }
+        }
+        blocks -= clearedBlocks;
+        touchedCount = 0;
+        return lines;
+    }
+
+    /**
+     * Get the number of blocks emptied by the last line clear
+     * @return number of blocks
+     */
+    public int getClearedBlocks() {
+        return clearedBlocks;
+    }
+
+    /**
+     * Remove every block
+     */
+    public void clean() {
+        tiles.clear();
+        touchedCount = 0;
+        blocks = 0;
+    }
+
+    /**
+     * Get the number of filled blocks
+     * @return number of blocks
+     */
+    public int getBlockCount() {
+        return blocks;
+    }
+
+    /**
+     * Get the number of tiles stored, each with at least one block filled
+     * @return number of tiles
+     */
+    public int getTileCount() {
+        return tiles.size();
+    }
+
+    /**
+     * Get the bit of a block in its tile's bitboard
+     * @param x column
+     * @param y row
+     * @return the bit
+     */
+    private static long bit(int x, int y) {
+        return 1L << ((y & 7) * TILE + (x & 7));
+    }
+
+    /**
+     * Note that a tile was touched, so its lines are checked at the next clear
+     * @param key key of the tile
+     */
+    private void touch(long key) {
+        for (int i = 0; i < touchedCount; i++) {
+            if (touched[i] == key) return;
+        }
+        if (touchedCount == touched.length) {
+            touched = Arrays.copyOf(touched, touchedCount * 2);
+        }
+        touched[touchedCount++] = key;
+    }
+}
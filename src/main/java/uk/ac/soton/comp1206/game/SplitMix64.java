@@ -0,0 +1,80 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A small, fast random number generator whose whole state is a single long, using the SplitMix64 algorithm. Unlike
+ * java.util.Random, its state can be read and restored, so a game can be saved and resumed mid-way with the same
+ * random choices still to come.
+ */
+public class SplitMix64 {
+    /**
+     * Step added to the state for every number
+     */
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+    /**
+     * Current state
+     */
+    private long state;
+
+    /**
+     * Create a generator
+     * @param seed starting state
+     */
+    public SplitMix64(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Get the next random long
+     * @return any long, uniformly
+     */
+    public long nextLong() {
+        long z = (state += GAMMA);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Get the next random int
+     * @return any int, uniformly
+     */
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * Get the next random int below a bound, without bias
+     * @param bound upper bound, exclusive, must be positive
+     * @return an int from 0 to bound - 1, uniformly
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive: " + bound);
+        }
+        int mask = bound - 1;
+        int r = nextInt();
+        if ((bound & mask) == 0) {
+            return r & mask;
+        }
+        // Reject the top values that would make some results more likely than others
+        for (int u = r >>> 1; u + mask - (r = u % bound) < 0; u = nextInt() >>> 1) {
+        }
+        return r;
+    }
+
+    /**
+     * Get the current state
+     * @return state
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Restore a state read earlier with getState
+     * @param state state
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+}
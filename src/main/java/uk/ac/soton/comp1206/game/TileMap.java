@@ -0,0 +1,228 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from the position of an 8 x 8 tile of a SparseGrid to its occupancy bitboard and
+ * block values. Keys are primitive longs, so looking a tile up allocates nothing, and collisions are resolved by
+ * linear probing. Removing a tile shifts the tiles after it back into place rather than leaving a marker, so the map
+ * never fills up with dead slots however many tiles come and go.
+ */
+class TileMap {
+    /**
+     * Key of an empty slot. Tile keys come from block positions divided by 8, so none can be this.
+     */
+    static final long EMPTY = Long.MIN_VALUE;
+    /**
+     * Smallest number of slots
+     */
+    private static final int MIN_CAPACITY = 16;
+    /**
+     * Key of the tile in each slot
+     */
+    private long[] keys;
+    /**
+     * Occupancy bitboard of the tile in each slot, bit (y * 8 + x) set when the block at x and y is filled
+     */
+    private long[] bits;
+    /**
+     * Value of every block of the tile in each slot, indexed by y * 8 + x
+     */
+    private byte[][] values;
+    /**
+     * Number of tiles
+     */
+    private int size = 0;
+
+    /**
+     * Create an empty map
+     */
+    TileMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Make the key of a tile
+     * @param tileX column of the tile
+     * @param tileY row of the tile
+     * @return key
+     */
+    static long key(int tileX, int tileY) {
+        return ((long) tileX << 32) | (tileY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get the column of a tile from its key
+     * @param key key
+     * @return column of the tile
+     */
+    static int tileX(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Get the row of a tile from its key
+     * @param key key
+     * @return row of the tile
+     */
+    static int tileY(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Find the slot of a tile
+     * @param key key of the tile
+     * @return slot, or -1 if there is no such tile
+     */
+    int find(long key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return slot;
+            if (keys[slot] == EMPTY) return -1;
+        }
+    }
+
+    /**
+     * Find the slot of a tile, adding it empty if there is no such tile
+     * @param key key of the tile
+     * @return slot
+     */
+    int findOrAdd(long key) {
+        // Kept at most half full, so probes stay short
+        if (2 * (size + 1) > keys.length) grow();
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        for (; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return slot;
+        }
+        keys[slot] = key;
+        bits[slot] = 0;
+        values[slot] = new byte[64];
+        size++;
+        return slot;
+    }
+
+    /**
+     * Remove the tile in a slot, moving later tiles of the same probe run back so every tile can still be found
+     * @param slot slot of the tile
+     */
+    void remove(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            // A tile can fill the hole unless its home lies cyclically after the hole, up to where it now is
+            boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (stays) continue;
+            keys[hole] = keys[next];
+            bits[hole] = bits[next];
+            values[hole] = values[next];
+            hole = next;
+        }
+        keys[hole] = EMPTY;
+        bits[hole] = 0;
+        values[hole] = null;
+        size--;
+    }
+
+    /**
+     * Remove every tile and shrink back to the smallest size
+     */
+    void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    /**
+     * Get the number of tiles
+     * @return number of tiles
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of slots, including empty ones
+     * @return capacity
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Get the key of the tile in a slot
+     * @param slot slot
+     * @return key, or EMPTY
+     */
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Get the occupancy bitboard of the tile in a slot
+     * @param slot slot
+     * @return bitboard
+     */
+    long bitsAt(int slot) {
+        return bits[slot];
+    }
+
+    /**
+     * Set the occupancy bitboard of the tile in a slot
+     * @param slot slot
+     * @param tile bitboard
+     */
+    void setBits(int slot, long tile) {
+        bits[slot] = tile;
+    }
+
+    /**
+     * Get the block values of the tile in a slot, which can be changed in place
+     * @param slot slot
+     * @return values indexed by y * 8 + x
+     */
+    byte[] valuesAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Spread a key over the slots
+     * @param key key
+     * @return hash, to be masked to the number of slots
+     */
+    private static int hash(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    /**
+     * Double the number of slots and put every tile back
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldBits = bits;
+        byte[][] oldValues = values;
+        allocate(oldKeys.length * 2);
+        int mask = keys.length - 1;
+        for (int old = 0; old < oldKeys.length; old++) {
+            if (oldKeys[old] == EMPTY) continue;
+            int slot = hash(oldKeys[old]) & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[old];
+            bits[slot] = oldBits[old];
+            values[slot] = oldValues[old];
+        }
+    }
+
+    /**
+     * Make new, empty slots
+     * @param capacity number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        bits = new long[capacity];
+        values = new byte[capacity][];
+    }
+}
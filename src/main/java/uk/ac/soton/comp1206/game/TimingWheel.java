@@ -0,0 +1,279 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+
+/**
+ * A hashed timing wheel used to run the countdowns of many games from one place. Time is split into ticks, and each
+ * tick maps onto one of a fixed number of buckets holding the timeouts due in it. Arming, re-arming and cancelling a
+ * timeout just links it into or out of a bucket, so each is O(1) however many timeouts are pending.
+ *
+ * A wheel either follows real time, once started, on a single shared daemon thread, or is advanced by hand, which lets
+ * simulations skip through countdowns without waiting. Expired tasks run on the thread doing the advancing, so they
+ * should be short.
+ */
+public class TimingWheel {
+    private static final Logger logger = LogManager.getLogger(TimingWheel.class);
+    /**
+     * Length of a tick of the shared wheel, in milliseconds
+     */
+    public static final long DEFAULT_TICK = 10;
+    /**
+     * Number of buckets in the shared wheel
+     */
+    public static final int DEFAULT_SIZE = 512;
+    /**
+     * The wheel shared by every game that does not bring its own
+     */
+    private static TimingWheel shared;
+    /**
+     * Length of a tick, in milliseconds
+     */
+    private final long tickMillis;
+    /**
+     * First timeout in each bucket
+     */
+    private final Timeout[] buckets;
+    /**
+     * Mask to turn a tick into a bucket index
+     */
+    private final int mask;
+    /**
+     * Tasks that expired in the tick being processed
+     */
+    private final ArrayList<Runnable> expired = new ArrayList<>();
+    /**
+     * Number of ticks processed so far
+     */
+    private long tick = 0;
+    /**
+     * Thread following real time, if the wheel has been started
+     */
+    private Thread worker;
+
+    /**
+     * Create a new timing wheel. It does not move until it is started or advanced.
+     * @param tickMillis length of a tick, in milliseconds
+     * @param size       number of buckets, must be a power of two
+     */
+    public TimingWheel(long tickMillis, int size) {
+        if (tickMillis < 1 || size < 1 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Invalid timing wheel: " + tickMillis + "ms x " + size);
+        }
+        this.tickMillis = tickMillis;
+        this.buckets = new Timeout[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Get the shared timing wheel, starting it the first time
+     * @return the shared wheel
+     */
+    public static synchronized TimingWheel shared() {
+        if (shared == null) {
+            shared = new TimingWheel(DEFAULT_TICK, DEFAULT_SIZE);
+            shared.start();
+        }
+        return shared;
+    }
+
+    /**
+     * Create a new timeout on this wheel. It does nothing until it is scheduled.
+     * @param task task to run when the timeout expires
+     * @return the timeout
+     */
+    public Timeout newTimeout(Runnable task) {
+        return new Timeout(this, task);
+    }
+
+    /**
+     * Get how far this wheel has moved
+     * @return time in milliseconds
+     */
+    public synchronized long getTime() {
+        return tick * tickMillis;
+    }
+
+    /**
+     * Start following real time on a daemon thread
+     */
+    public synchronized void start() {
+        if (worker != null) return;
+        worker = new Thread(this::run, "TimingWheel");
+        worker.setDaemon(true);
+        worker.start();
+        logger.info("Timing wheel started");
+    }
+
+    /**
+     * Move the wheel forward by hand, running every task that expires on the way. Used for virtual time, and should not
+     * be used on a started wheel.
+     * @param millis time to move forward by, in milliseconds
+     */
+    public void advance(long millis) {
+        long target;
+        synchronized (this) {
+            target = tick + millis / tickMillis;
+        }
+        while (currentTick() < target) {
+            expire();
+        }
+    }
+
+    /**
+     * Follow real time, expiring each tick as it passes
+     */
+    private void run() {
+        long start = System.nanoTime();
+        long tickNanos = tickMillis * 1_000_000;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long due = (System.nanoTime() - start) / tickNanos;
+                while (currentTick() < due) {
+                    expire();
+                }
+                long sleep = start + (due + 1) * tickNanos - System.nanoTime();
+                if (sleep > 0) {
+                    Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.info("Timing wheel stopped");
+        }
+    }
+
+    /**
+     * Get the number of ticks processed so far
+     * @return tick count
+     */
+    private synchronized long currentTick() {
+        return tick;
+    }
+
+    /**
+     * Process the next tick, unlinking every timeout due in it and then running their tasks outside the lock
+     */
+    private void expire() {
+        synchronized (this) {
+            tick++;
+            int bucket = (int) (tick & mask);
+            Timeout timeout = buckets[bucket];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                // Timeouts more than one turn away share the bucket, so only take the ones due now
+                if (timeout.deadline <= tick) {
+                    timeout.unlink();
+                    expired.add(timeout.task);
+                }
+                timeout = next;
+            }
+        }
+        for (int i = 0; i < expired.size(); i++) {
+            try {
+                expired.get(i).run();
+            } catch (RuntimeException e) {
+                logger.error("Timeout task failed", e);
+            }
+        }
+        expired.clear();
+    }
+
+    /**
+     * A single task on a timing wheel that can be armed, re-armed and cancelled any number of times
+     */
+    public static class Timeout {
+        /**
+         * Wheel this timeout belongs to, also used as the lock
+         */
+        private final TimingWheel wheel;
+        /**
+         * Task to run on expiry
+         */
+        private final Runnable task;
+        /**
+         * Tick this timeout expires in
+         */
+        private long deadline;
+        /**
+         * Neighbours in the bucket
+         */
+        private Timeout previous, next;
+        /**
+         * Whether this timeout is linked into a bucket
+         */
+        private boolean armed = false;
+
+        /**
+         * Create a timeout, should only be called by the wheel
+         * @param wheel wheel this timeout belongs to
+         * @param task  task to run on expiry
+         */
+        private Timeout(TimingWheel wheel, Runnable task) {
+            this.wheel = wheel;
+            this.task = task;
+        }
+
+        /**
+         * Arm this timeout to expire after the given delay, replacing any previous schedule
+         * @param delayMillis delay in milliseconds
+         */
+        public void schedule(long delayMillis) {
+            synchronized (wheel) {
+                if (armed) unlink();
+                long ticks = Math.max(1, (delayMillis + wheel.tickMillis - 1) / wheel.tickMillis);
+                deadline = wheel.tick + ticks;
+                int bucket = (int) (deadline & wheel.mask);
+                next = wheel.buckets[bucket];
+                if (next != null) next.previous = this;
+                wheel.buckets[bucket] = this;
+                armed = true;
+            }
+        }
+
+        /**
+         * Stop this timeout from expiring. It can be scheduled again later.
+         */
+        public void cancel() {
+            synchronized (wheel) {
+                if (armed) unlink();
+            }
+        }
+
+        /**
+         * Check whether this timeout is waiting to expire
+         * @return true if armed
+         */
+        public boolean isArmed() {
+            synchronized (wheel) {
+                return armed;
+            }
+        }
+
+        /**
+         * Get the time left until this timeout expires
+         * @return time in milliseconds, or 0 if not armed
+         */
+        public long getRemaining() {
+            synchronized (wheel) {
+                return armed ? (deadline - wheel.tick) * wheel.tickMillis : 0;
+            }
+        }
+
+        /**
+         * Remove this timeout from its bucket, must be called holding the wheel lock
+         */
+        private void unlink() {
+            if (previous != null) {
+                previous.next = next;
+            } else {
+                wheel.buckets[(int) (deadline & wheel.mask)] = next;
+            }
+            if (next != null) next.previous = previous;
+            previous = null;
+            next = null;
+            armed = false;
+        }
+    }
+}
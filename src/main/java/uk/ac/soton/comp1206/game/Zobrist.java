@@ -0,0 +1,74 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * Random keys for Zobrist hashing of game positions. The hash of a position is the exclusive or of the key of every
+ * filled block and of every piece in the queue, so it can be updated as blocks fill and empty, rather than worked out
+ * again, and the same position reached in different orders always has the same hash.
+ *
+ * The keys are drawn from a fixed seed, so hashes are the same in every run.
+ */
+public final class Zobrist {
+    /**
+     * Number of queue slots with their own piece keys
+     */
+    public static final int QUEUE = 2;
+    /**
+     * Seed the keys are drawn from
+     */
+    private static final long SEED = 0x5A0B215AL;
+    /**
+     * Key of each block, indexed by y * Grid.MAX_SIZE + x so that any size of grid can use them
+     */
+    private static final long[] CELLS = new long[Grid.MAX_SIZE * Grid.MAX_SIZE];
+    /**
+     * Key of each piece in each queue slot, indexed by slot * PieceSet.MAX_PIECES + piece
+     */
+    private static final long[] PIECES = new long[QUEUE * PieceSet.MAX_PIECES];
+
+    static {
+        var random = new SplitMix64(SEED);
+        for (int i = 0; i < CELLS.length; i++) {
+            CELLS[i] = random.nextLong();
+        }
+        for (int i = 0; i < PIECES.length; i++) {
+            PIECES[i] = random.nextLong();
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Get the key of a filled block
+     * @param x column
+     * @param y row
+     * @return key
+     */
+    public static long cell(int x, int y) {
+        return CELLS[y * Grid.MAX_SIZE + x];
+    }
+
+    /**
+     * Get the key of a piece waiting in the queue. Rotations share a key, since a piece can be turned freely.
+     * @param slot  position in the queue, 0 for the current piece
+     * @param piece piece number
+     * @return key
+     */
+    public static long piece(int slot, int piece) {
+        return PIECES[slot * PieceSet.MAX_PIECES + piece];
+    }
+
+    /**
+     * Get a key for any other number that is part of a position, such as the multiplier. Keys of different kinds of
+     * number are unrelated.
+     * @param kind  what the number is, chosen by the caller
+     * @param value the number
+     * @return key
+     */
+    public static long number(int kind, int value) {
+        long z = SEED + ((long) kind << 32 | (value & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,71 @@
+package uk.ac.soton.comp1206.replay;
+
+import uk.ac.soton.comp1206.game.GameState;
+
+/**
+ * A keyframe of a replay: the whole game state after a number of actions, from which the replay can be resumed
+ */
+public final class Keyframe {
+    /**
+     * Offset of the keyframe in the replay
+     */
+    private final long offset;
+    /**
+     * Number of actions before the keyframe
+     */
+    private final int action;
+    /**
+     * Game time of the last of those actions, in milliseconds
+     */
+    private final long time;
+    /**
+     * Game state after those actions
+     */
+    private final GameState state;
+
+    /**
+     * Create a keyframe
+     * @param offset offset of the keyframe in the replay
+     * @param action number of actions before the keyframe
+     * @param time   game time of the last of those actions
+     * @param state  game state after those actions
+     */
+    public Keyframe(long offset, int action, long time, GameState state) {
+        this.offset = offset;
+        this.action = action;
+        this.time = time;
+        this.state = state;
+    }
+
+    /**
+     * Get the offset of the keyframe in the replay
+     * @return offset in bytes
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Get the number of actions before the keyframe
+     * @return number of actions
+     */
+    public int getAction() {
+        return action;
+    }
+
+    /**
+     * Get the game time of the last action before the keyframe
+     * @return time in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Get the game state after the actions before the keyframe
+     * @return the state
+     */
+    public GameState getState() {
+        return state;
+    }
+}
@@ -0,0 +1,307 @@
+package uk.ac.soton.comp1206.replay;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.GameState;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and encodings of the replay file format.
+ *
+ * A replay starts with a header: the magic number, the format version, the number of columns and rows as one byte
+ * each, the seed of the game's piece generator as a long, the number of actions between keyframes as an int, and how
+ * the generator deals pieces: a byte that is 1 for a bag, or 0 for weights followed by the number of pieces and the
+ * weight of each as varints. It is followed by one record per player action or timer expiry, in the order the game
+ * ran them. A record is a type byte, the time since the previous record in milliseconds of game time as a varint, and
+ * then the arguments of that type of record as zigzag varints. A record is usually two or three bytes long.
+ *
+ * Every so many actions a keyframe is written before the next action, holding the whole game state at that point:
+ * the type byte, the length of the rest as a varint, the number of actions before it and the time of the last one, the
+ * random state and bag of the piece generator, the stats, both pieces, the occupancy bitboard and the colour of each
+ * filled block as a nibble. A replay can be resumed from any keyframe rather than from the start.
+ *
+ * A finished replay ends with an index of its keyframes, each an 8 byte offset, 4 byte action number and 8 byte time,
+ * followed by a footer: the number of keyframes, the offset of the index and the index magic number. A replay without
+ * a footer, for example one cut short by a crash, is still readable, but has to be scanned for its keyframes.
+ */
+public final class ReplayFormat {
+    /**
+     * First four bytes of every replay, "TREC"
+     */
+    public static final int MAGIC = 0x54524543;
+    /**
+     * Version of the format
+     */
+    public static final byte VERSION = 4;
+    /**
+     * Last four bytes of a finished replay, "TIDX"
+     */
+    public static final int INDEX_MAGIC = 0x54494458;
+    /**
+     * Size of the fixed part of the header in bytes, before the distribution of pieces
+     */
+    public static final int HEADER_SIZE = 4 + 1 + 1 + 1 + 8 + 4;
+    /**
+     * Size of an index entry in bytes
+     */
+    public static final int INDEX_ENTRY_SIZE = 8 + 4 + 8;
+    /**
+     * Size of the footer in bytes
+     */
+    public static final int FOOTER_SIZE = 4 + 8 + 4;
+    /**
+     * Largest size of a record in bytes
+     */
+    public static final int MAX_RECORD_SIZE = 1 + 10 + 5 + 5;
+    /**
+     * The game started
+     */
+    public static final int START = 0;
+    /**
+     * A piece was placed, or an attempt was made to, by clicking the block at x and y
+     */
+    public static final int PLACE = 1;
+    /**
+     * The current piece was rotated a number of times
+     */
+    public static final int ROTATE = 2;
+    /**
+     * The current and next piece were swapped
+     */
+    public static final int SWAP = 3;
+    /**
+     * The current piece was skipped
+     */
+    public static final int SKIP = 4;
+    /**
+     * A life was bought
+     */
+    public static final int LIFE = 5;
+    /**
+     * The grid was cleared
+     */
+    public static final int CLEAR = 6;
+    /**
+     * The countdown ran out
+     */
+    public static final int TIMER = 7;
+    /**
+     * A keyframe, not an action
+     */
+    public static final int KEYFRAME = 8;
+    /**
+     * Number of arguments of each type of action record
+     */
+    private static final int[] ARGUMENTS = {0, 2, 1, 0, 0, 0, 0, 0};
+
+    private ReplayFormat() {
+    }
+
+    /**
+     * Get the number of arguments a type of record has
+     * @param type record type
+     * @return number of arguments
+     */
+    public static int arguments(int type) {
+        if (type < 0 || type >= ARGUMENTS.length) {
+            throw new IllegalArgumentException("Unknown record type: " + type);
+        }
+        return ARGUMENTS[type];
+    }
+
+    /**
+     * Get the largest size of a keyframe for a grid, including its type and length
+     * @param blocks number of blocks in the grid
+     * @return size in bytes
+     */
+    public static int maxKeyframeSize(int blocks) {
+        return 1 + 5 + 5 + 10 + 8 + 5 + 6 * 5 + 4 + 8 * ((blocks + 63) >>> 6) + (blocks + 1) / 2;
+    }
+
+    /**
+     * Write the body of a keyframe, without its type and length
+     * @param buffer buffer to write to
+     * @param action number of actions before the keyframe
+     * @param time   game time of the last of those actions
+     * @param state  game state after those actions
+     */
+    public static void putKeyframe(ByteBuffer buffer, int action, long time, GameState state) {
+        putVarInt(buffer, action);
+        putVarLong(buffer, time);
+        buffer.putLong(state.getRandomState());
+        putVarInt(buffer, state.getBag());
+        putVarInt(buffer, state.getScore());
+        putVarInt(buffer, state.getLevel());
+        putVarInt(buffer, state.getLives());
+        putVarInt(buffer, state.getMultiplier());
+        putVarInt(buffer, state.getLines());
+        putVarInt(buffer, state.getAnnouncedLevel());
+        putPiece(buffer, state.getCurrentPiece());
+        putPiece(buffer, state.getNextPiece());
+
+        // Occupancy bitboard, then the colours of only the filled blocks
+        int blocks = state.getBlockCount();
+        for (int word = 0; word < blocks; word += 64) {
+            long bits = 0;
+            for (int index = word; index < Math.min(word + 64, blocks); index++) {
+                if (state.getBlock(index) != 0) bits |= 1L << index;
+            }
+            buffer.putLong(bits);
+        }
+        int nibble = -1;
+        for (int index = 0; index < blocks; index++) {
+            int value = state.getBlock(index) & 0xF;
+            if (value == 0) continue;
+            if (nibble < 0) {
+                nibble = value;
+            } else {
+                buffer.put((byte) (nibble | value << 4));
+                nibble = -1;
+            }
+        }
+        if (nibble >= 0) buffer.put((byte) nibble);
+    }
+
+    /**
+     * Read the body of a keyframe, without its type and length
+     * @param buffer buffer to read from
+     * @param blocks number of blocks in the grid
+     * @param offset offset of the keyframe in the replay
+     * @return the keyframe
+     */
+    public static Keyframe getKeyframe(ByteBuffer buffer, int blocks, long offset) {
+        int action = getVarInt(buffer);
+        long time = getVarLong(buffer);
+        long randomState = buffer.getLong();
+        int bag = getVarInt(buffer);
+        int score = getVarInt(buffer);
+        int level = getVarInt(buffer);
+        int lives = getVarInt(buffer);
+        int multiplier = getVarInt(buffer);
+        int lines = getVarInt(buffer);
+        int announcedLevel = getVarInt(buffer);
+        GamePiece currentPiece = getPiece(buffer);
+        GamePiece nextPiece = getPiece(buffer);
+
+        var occupied = new long[(blocks + 63) >>> 6];
+        for (int word = 0; word < occupied.length; word++) {
+            occupied[word] = buffer.getLong();
+        }
+        var values = new byte[blocks];
+        int packed = -1;
+        for (int index = 0; index < blocks; index++) {
+            if ((occupied[index >>> 6] & (1L << index)) == 0) continue;
+            if (packed < 0) {
+                packed = buffer.get() & 0xFF;
+                values[index] = (byte) (packed & 0xF);
+            } else {
+                values[index] = (byte) (packed >>> 4);
+                packed = -1;
+            }
+        }
+        var state = new GameState(values, score, level, lives, multiplier, lines, announcedLevel, currentPiece,
+                nextPiece, randomState, bag);
+        return new Keyframe(offset, action, time, state);
+    }
+
+    /**
+     * Write how a piece generator deals pieces, the variable part of the header
+     * @param buffer    buffer to write to
+     * @param generator generator
+     */
+    public static void putDistribution(ByteBuffer buffer, PieceGenerator generator) {
+        if (generator.isBag()) {
+            buffer.put((byte) 1);
+            return;
+        }
+        buffer.put((byte) 0);
+        int[] weights = generator.getWeights();
+        putVarInt(buffer, weights.length);
+        for (int weight : weights) {
+            putVarInt(buffer, weight);
+        }
+    }
+
+    /**
+     * Read how pieces are dealt and create a generator dealing them that way
+     * @param buffer buffer to read from
+     * @param seed   seed for the generator
+     * @return the generator
+     */
+    public static PieceGenerator getDistribution(ByteBuffer buffer, long seed) {
+        if (buffer.get() == 1) {
+            return PieceGenerator.bag(seed);
+        }
+        var weights = new int[getVarInt(buffer)];
+        for (int piece = 0; piece < weights.length; piece++) {
+            weights[piece] = getVarInt(buffer);
+        }
+        return PieceGenerator.weighted(seed, weights);
+    }
+
+    /**
+     * Write a piece as its number and rotation
+     * @param buffer buffer to write to
+     * @param piece  piece
+     */
+    private static void putPiece(ByteBuffer buffer, GamePiece piece) {
+        buffer.put((byte) piece.getPiece()).put((byte) piece.getRotation());
+    }
+
+    /**
+     * Read a piece written by putPiece
+     * @param buffer buffer to read from
+     * @return the piece
+     */
+    private static GamePiece getPiece(ByteBuffer buffer) {
+        int piece = buffer.get();
+        return GamePiece.createPiece(piece, buffer.get());
+    }
+
+    /**
+     * Write an unsigned varint, seven bits per byte with the top bit set on all but the last
+     * @param buffer buffer to write to
+     * @param value  value, treated as unsigned
+     */
+    public static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Read an unsigned varint
+     * @param buffer buffer to read from
+     * @return value
+     */
+    public static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    /**
+     * Write a signed int as a zigzag varint, so that small negative numbers stay short
+     * @param buffer buffer to write to
+     * @param value  value
+     */
+    public static void putVarInt(ByteBuffer buffer, int value) {
+        putVarLong(buffer, ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Read a signed zigzag varint
+     * @param buffer buffer to read from
+     * @return value
+     */
+    public static int getVarInt(ByteBuffer buffer) {
+        int value = (int) getVarLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
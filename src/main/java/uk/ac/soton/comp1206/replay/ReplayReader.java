@@ -0,0 +1,352 @@
+package uk.ac.soton.comp1206.replay;
+
+import uk.ac.soton.comp1206.game.PieceGenerator;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the records of a replay in the ReplayFormat, one at a time, and can jump to any keyframe.
+ *
+ * Replay files are memory-mapped rather than read, so even large replays are not copied onto the heap, and scanning
+ * many of them only touches the pages actually read. The keyframe for any action is found straight from the index,
+ * since keyframes come at a fixed interval. A replay cut short, for example by a crash, has no index, so it is scanned
+ * once for its keyframes, and reads as if it ended after its last whole record.
+ */
+public class ReplayReader {
+    /**
+     * Replay being read, positioned at the next record
+     */
+    private final ByteBuffer data;
+    /**
+     * Offset of the first record
+     */
+    private final int start;
+    /**
+     * Offset just past the last record
+     */
+    private final int end;
+    /**
+     * Number of columns in the game
+     */
+    private final int cols;
+    /**
+     * Number of rows in the game
+     */
+    private final int rows;
+    /**
+     * Seed of the game's piece generator
+     */
+    private final long seed;
+    /**
+     * Generator dealing pieces the way the game's did, never used itself
+     */
+    private final PieceGenerator generator;
+    /**
+     * Number of actions between keyframes
+     */
+    private final int interval;
+    /**
+     * Offset and action number of each keyframe
+     */
+    private long[] keyframeOffsets;
+    private int[] keyframeActions;
+    /**
+     * Number of keyframes
+     */
+    private int keyframes;
+    /**
+     * Number of actions read so far
+     */
+    private int actions = 0;
+    /**
+     * Type of the current record
+     */
+    private int type = -1;
+    /**
+     * Game time of the current record, in milliseconds
+     */
+    private long time = 0;
+    /**
+     * Arguments of the current record
+     */
+    private int a, b;
+
+    /**
+     * Start reading a replay
+     * @param data whole replay, from offset 0
+     * @throws IOException if the replay does not start with a valid header
+     */
+    public ReplayReader(ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.limit() < ReplayFormat.HEADER_SIZE || data.getInt(0) != ReplayFormat.MAGIC) {
+            throw new IOException("Not a replay");
+        }
+        byte version = data.get(4);
+        if (version != ReplayFormat.VERSION) {
+            throw new IOException("Unsupported replay version: " + version);
+        }
+        cols = data.get(5) & 0xFF;
+        rows = data.get(6) & 0xFF;
+        seed = data.getLong(7);
+        interval = data.getInt(15);
+        if (interval < 1) {
+            throw new IOException("Corrupt replay header");
+        }
+        var header = data.duplicate().position(ReplayFormat.HEADER_SIZE);
+        try {
+            generator = ReplayFormat.getDistribution(header, seed);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt replay header", e);
+        }
+        start = header.position();
+
+        int footer = data.limit() - ReplayFormat.FOOTER_SIZE;
+        if (footer >= start && data.getInt(footer + 12) == ReplayFormat.INDEX_MAGIC) {
+            end = readIndex(footer);
+        } else {
+            end = data.limit();
+            scan();
+        }
+        data.position(start);
+    }
+
+    /**
+     * Memory-map a replay file and start reading it
+     * @param file replay file
+     * @return the reader
+     * @throws IOException if the file cannot be read or is not a replay
+     */
+    public static ReplayReader open(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Replay too large to map: " + channel.size());
+            }
+            // The mapping stays valid after the channel is closed
+            return new ReplayReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Move on to the next action, skipping keyframes
+     * @return true if there was one, false at the end of the replay
+     */
+    public boolean next() {
+        while (data.position() < end) {
+            int position = data.position();
+            try {
+                type = data.get();
+                if (type == ReplayFormat.KEYFRAME) {
+                    int length = (int) ReplayFormat.getVarLong(data);
+                    data.position(data.position() + length);
+                    continue;
+                }
+                time += ReplayFormat.getVarLong(data);
+                int arguments = ReplayFormat.arguments(type);
+                a = arguments > 0 ? ReplayFormat.getVarInt(data) : 0;
+                b = arguments > 1 ? ReplayFormat.getVarInt(data) : 0;
+                actions++;
+                return true;
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                // A partial or corrupt record ends the replay
+                data.position(position);
+                break;
+            }
+        }
+        type = -1;
+        return false;
+    }
+
+    /**
+     * Go back to the start of the replay
+     */
+    public void rewind() {
+        data.position(start);
+        actions = 0;
+        time = 0;
+        type = -1;
+    }
+
+    /**
+     * Jump to the last keyframe at or before an action, so that the next record read is the one after the keyframe
+     * @param action number of actions to have been made
+     * @return the keyframe, or null if there is none that early, in which case the reader is rewound instead
+     */
+    public Keyframe seek(int action) {
+        int keyframe = findKeyframe(action);
+        if (keyframe < 0) {
+            rewind();
+            return null;
+        }
+        var body = data.duplicate().position((int) keyframeOffsets[keyframe]);
+        body.get();
+        int length = (int) ReplayFormat.getVarLong(body);
+        int next = body.position() + length;
+        Keyframe found = ReplayFormat.getKeyframe(body, cols * rows, keyframeOffsets[keyframe]);
+        data.position(next);
+        actions = found.getAction();
+        time = found.getTime();
+        type = -1;
+        return found;
+    }
+
+    /**
+     * Find the last keyframe at or before an action
+     * @param action number of actions
+     * @return index of the keyframe, or -1 if there is none
+     */
+    private int findKeyframe(int action) {
+        // Keyframes come every interval actions, so the index is direct unless the replay is unusual
+        int guess = Math.min(action / interval, keyframes) - 1;
+        if (guess < 0) return -1;
+        if (keyframeActions[guess] <= action && (guess + 1 == keyframes || keyframeActions[guess + 1] > action)) {
+            return guess;
+        }
+        int found = Arrays.binarySearch(keyframeActions, 0, keyframes, action);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    /**
+     * Read the keyframe index from the end of a finished replay
+     * @param footer offset of the footer
+     * @return offset of the index, which is where the records end
+     * @throws IOException if the index is corrupt
+     */
+    private int readIndex(int footer) throws IOException {
+        keyframes = data.getInt(footer);
+        long index = data.getLong(footer + 4);
+        if (keyframes < 0 || index < start || index + (long) keyframes * ReplayFormat.INDEX_ENTRY_SIZE != footer) {
+            throw new IOException("Corrupt replay index");
+        }
+        keyframeOffsets = new long[keyframes];
+        keyframeActions = new int[keyframes];
+        for (int keyframe = 0; keyframe < keyframes; keyframe++) {
+            int entry = (int) index + keyframe * ReplayFormat.INDEX_ENTRY_SIZE;
+            keyframeOffsets[keyframe] = data.getLong(entry);
+            keyframeActions[keyframe] = data.getInt(entry + 8);
+        }
+        return (int) index;
+    }
+
+    /**
+     * Find the keyframes of a replay without an index by reading it through
+     */
+    private void scan() {
+        keyframeOffsets = new long[16];
+        keyframeActions = new int[16];
+        var scan = data.duplicate().position(start);
+        int counted = 0;
+        try {
+            while (scan.hasRemaining()) {
+                int position = scan.position();
+                int kind = scan.get();
+                if (kind == ReplayFormat.KEYFRAME) {
+                    int length = (int) ReplayFormat.getVarLong(scan);
+                    // A keyframe cut short is no use
+                    if (length > scan.remaining()) break;
+                    if (keyframes == keyframeOffsets.length) {
+                        keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframes * 2);
+                        keyframeActions = Arrays.copyOf(keyframeActions, keyframes * 2);
+                    }
+                    keyframeOffsets[keyframes] = position;
+                    keyframeActions[keyframes] = counted;
+                    keyframes++;
+                    scan.position(scan.position() + length);
+                    continue;
+                }
+                ReplayFormat.getVarLong(scan);
+                for (int argument = ReplayFormat.arguments(kind); argument > 0; argument--) {
+                    ReplayFormat.getVarInt(scan);
+                }
+                counted++;
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // The replay ends at the last whole record
+        }
+    }
+
+    /**
+     * Get the number of columns in the game
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows in the game
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the seed of the game's piece generator
+     * @return seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Create a new piece generator that will deal the same pieces as the game's did
+     * @return the generator, from the start
+     */
+    public PieceGenerator createGenerator() {
+        return generator.withSeed(seed);
+    }
+
+    /**
+     * Get the number of keyframes in the replay
+     * @return number of keyframes
+     */
+    public int getKeyframeCount() {
+        return keyframes;
+    }
+
+    /**
+     * Get the number of actions read so far, which is the number of the next action to be read
+     * @return number of actions
+     */
+    public int getActions() {
+        return actions;
+    }
+
+    /**
+     * Get the type of the current record
+     * @return record type from ReplayFormat
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Get the game time of the current record
+     * @return time in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Get the first argument of the current record
+     * @return argument, 0 if it has none
+     */
+    public int getA() {
+        return a;
+    }
+
+    /**
+     * Get the second argument of the current record
+     * @return argument, 0 if it has fewer than two
+     */
+    public int getB() {
+        return b;
+    }
+}
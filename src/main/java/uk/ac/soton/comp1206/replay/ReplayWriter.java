@@ -0,0 +1,263 @@
+package uk.ac.soton.comp1206.replay;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GameState;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Records a replay of a game to a file, in the ReplayFormat.
+ *
+ * Records are encoded into an in-memory buffer, which takes a few nanoseconds, so recording does not slow the game down.
+ * When the buffer fills up it is handed to a background thread to be written out, and recording carries on into a
+ * second buffer meanwhile. Only if that one fills up before the first has been written does recording wait.
+ *
+ * Every so many actions the game is asked for a keyframe of its state, and the offsets of the keyframes are written as
+ * an index at the end when the writer is closed.
+ *
+ * A writer should only be used by one thread at a time, normally the one running the game's commands. If writing
+ * fails, the error is logged and the rest of the replay is dropped, so a full disk never stops a game.
+ */
+public class ReplayWriter implements Closeable {
+    private static final Logger logger = LogManager.getLogger(ReplayWriter.class);
+    /**
+     * Size of each buffer in bytes
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Default number of actions between keyframes
+     */
+    public static final int DEFAULT_INTERVAL = 256;
+    /**
+     * Thread writing full buffers out, shared by every writer
+     */
+    private static final ExecutorService io = Executors.newSingleThreadExecutor(task -> {
+        var thread = new Thread(task, "ReplayWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * File being written
+     */
+    private final FileChannel channel;
+    /**
+     * Number of blocks in the game
+     */
+    private final int blocks;
+    /**
+     * Number of actions between keyframes
+     */
+    private final int interval;
+    /**
+     * Number of bytes handed to the background thread so far
+     */
+    private long flushed = 0;
+    /**
+     * Number of actions recorded so far
+     */
+    private int actions = 0;
+    /**
+     * Number of keyframes written so far
+     */
+    private int keyframes = 0;
+    /**
+     * Offset, action number and time of each keyframe
+     */
+    private long[] keyframeOffsets = new long[16];
+    private int[] keyframeActions = new int[16];
+    private long[] keyframeTimes = new long[16];
+    /**
+     * Buffer records are being added to
+     */
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    /**
+     * The other buffer, which may be being written out
+     */
+    private ByteBuffer spare = ByteBuffer.allocate(BUFFER_SIZE);
+    /**
+     * Buffer keyframes are encoded in
+     */
+    private final ByteBuffer keyframe;
+    /**
+     * Write of the spare buffer in progress, if any
+     */
+    private Future<?> pending;
+    /**
+     * Time of the last record
+     */
+    private long lastTime = 0;
+    /**
+     * Whether writing has failed or the writer has been closed, in which case records are dropped
+     */
+    private boolean done = false;
+
+    /**
+     * Create a replay file with the default keyframe interval and write its header
+     * @param file      file to write, replaced if it exists
+     * @param cols      number of columns in the game
+     * @param rows      number of rows in the game
+     * @param generator the game's piece generator
+     * @throws IOException if the file cannot be created
+     */
+    public ReplayWriter(Path file, int cols, int rows, PieceGenerator generator) throws IOException {
+        this(file, cols, rows, generator, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Create a replay file and write its header
+     * @param file      file to write, replaced if it exists
+     * @param cols      number of columns in the game
+     * @param rows      number of rows in the game
+     * @param generator the game's piece generator
+     * @param interval  number of actions between keyframes
+     * @throws IOException if the file cannot be created
+     */
+    public ReplayWriter(Path file, int cols, int rows, PieceGenerator generator, int interval) throws IOException {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Invalid keyframe interval: " + interval);
+        }
+        this.blocks = cols * rows;
+        this.interval = interval;
+        this.keyframe = ByteBuffer.allocate(ReplayFormat.maxKeyframeSize(blocks));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(ReplayFormat.MAGIC).put(ReplayFormat.VERSION).put((byte) cols).put((byte) rows)
+                .putLong(generator.getSeed()).putInt(interval);
+        ReplayFormat.putDistribution(buffer, generator);
+    }
+
+    /**
+     * Record an action
+     * @param type record type from ReplayFormat
+     * @param time game time of the action, in milliseconds
+     * @param a    first argument, ignored if the type has none
+     * @param b    second argument, ignored if the type has fewer than two
+     */
+    public void write(int type, long time, int a, int b) {
+        if (done) return;
+        if (buffer.remaining() < ReplayFormat.MAX_RECORD_SIZE) {
+            flush();
+            if (done) return;
+        }
+        int arguments = ReplayFormat.arguments(type);
+        buffer.put((byte) type);
+        ReplayFormat.putVarLong(buffer, Math.max(0, time - lastTime));
+        lastTime = Math.max(lastTime, time);
+        if (arguments > 0) ReplayFormat.putVarInt(buffer, a);
+        if (arguments > 1) ReplayFormat.putVarInt(buffer, b);
+        actions++;
+    }
+
+    /**
+     * Check whether a keyframe is due before the next action
+     * @return true if writeKeyframe should be called
+     */
+    public boolean needsKeyframe() {
+        return !done && actions > 0 && actions % interval == 0 && actions / interval > keyframes;
+    }
+
+    /**
+     * Record a keyframe of the game as it is after the actions recorded so far
+     * @param state game state
+     */
+    public void writeKeyframe(GameState state) {
+        if (done) return;
+        if (buffer.remaining() < ReplayFormat.maxKeyframeSize(blocks)) {
+            flush();
+            if (done) return;
+        }
+        if (keyframes == keyframeOffsets.length) {
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframes * 2);
+            keyframeActions = Arrays.copyOf(keyframeActions, keyframes * 2);
+            keyframeTimes = Arrays.copyOf(keyframeTimes, keyframes * 2);
+        }
+        keyframeOffsets[keyframes] = flushed + buffer.position();
+        keyframeActions[keyframes] = actions;
+        keyframeTimes[keyframes] = lastTime;
+        keyframes++;
+
+        // The length goes first, so the body is encoded on the side
+        keyframe.clear();
+        ReplayFormat.putKeyframe(keyframe, actions, lastTime, state);
+        keyframe.flip();
+        buffer.put((byte) ReplayFormat.KEYFRAME);
+        ReplayFormat.putVarLong(buffer, keyframe.remaining());
+        buffer.put(keyframe);
+    }
+
+    /**
+     * Write everything recorded so far, followed by the keyframe index, and close the file
+     */
+    @Override
+    public void close() {
+        if (!done) {
+            long index = flushed + buffer.position();
+            for (int keyframe = 0; keyframe < keyframes && !done; keyframe++) {
+                if (buffer.remaining() < ReplayFormat.INDEX_ENTRY_SIZE) flush();
+                buffer.putLong(keyframeOffsets[keyframe]).putInt(keyframeActions[keyframe])
+                        .putLong(keyframeTimes[keyframe]);
+            }
+            if (buffer.remaining() < ReplayFormat.FOOTER_SIZE) flush();
+            if (!done) {
+                buffer.putInt(keyframes).putLong(index).putInt(ReplayFormat.INDEX_MAGIC);
+                flush();
+            }
+        }
+        done = true;
+        await();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.error("Could not close replay", e);
+        }
+    }
+
+    /**
+     * Hand the current buffer to the background thread and carry on in the spare one
+     */
+    private void flush() {
+        await();
+        if (done) return;
+        ByteBuffer full = buffer;
+        full.flip();
+        flushed += full.remaining();
+        buffer = spare;
+        buffer.clear();
+        spare = full;
+        pending = io.submit(() -> {
+            while (full.hasRemaining()) {
+                channel.write(full);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Wait for the write in progress to finish, if any
+     */
+    private void await() {
+        if (pending == null) return;
+        try {
+            pending.get();
+        } catch (ExecutionException e) {
+            logger.error("Could not write replay, recording stopped", e.getCause());
+            done = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            done = true;
+        }
+        pending = null;
+    }
+}
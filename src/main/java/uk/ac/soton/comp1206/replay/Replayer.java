@@ -0,0 +1,122 @@
+package uk.ac.soton.comp1206.replay;
+
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.NoPlacementPenalty;
+import uk.ac.soton.comp1206.game.TimingWheel;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Plays a recorded game back with no display, as fast as it will go. The game is rebuilt from the recorded seed and
+ * fed the recorded actions in order, including each time the countdown ran out, so it ends up exactly where the
+ * original did. Its own countdown never moves, so only the recorded expiries happen.
+ *
+ * A game can also be brought to any point in a replay without playing it from the start: it is restored from the
+ * nearest keyframe before that point and only the actions since are played, so stepping back and forth through a long
+ * replay takes the same time anywhere in it.
+ *
+ * Run from the command line, it replays each file given and prints the final stats as CSV.
+ */
+public class Replayer {
+
+    /**
+     * Replay files from the command line
+     * @param args replay files
+     */
+    public static void main(String[] args) {
+        System.setProperty("org.apache.logging.log4j.simplelog.level", "WARN");
+        System.out.println("file,actions,seconds,score,level,lives,lines");
+        for (String file : args) {
+            try {
+                var reader = ReplayReader.open(Path.of(file));
+                Game game = create(reader);
+                int actions = play(game, reader);
+                System.out.println(file + "," + actions + "," + reader.getTime() / 1000 + "," + game.getScore() + ","
+                        + game.getLevel() + "," + game.getLives() + "," + game.getLines());
+            } catch (IOException e) {
+                System.err.println(file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Replay a file to the end
+     * @param file replay file
+     * @return the game as it was when the recording ended
+     * @throws IOException if the file cannot be read or is not a replay
+     */
+    public static Game replay(Path file) throws IOException {
+        var reader = ReplayReader.open(file);
+        Game game = create(reader);
+        play(game, reader);
+        return game;
+    }
+
+    /**
+     * Create a game matching a replay, on a timing wheel that never moves. The game WAITs when no piece fits, since
+     * a life lost for that was recorded as a countdown running out.
+     * @param reader replay
+     * @return the game, not yet started
+     */
+    public static Game create(ReplayReader reader) {
+        var timer = new TimingWheel(TimingWheel.DEFAULT_TICK, TimingWheel.DEFAULT_SIZE);
+        var game = new Game(reader.getCols(), reader.getRows(), timer, reader.createGenerator());
+        game.setNoPlacementPenalty(NoPlacementPenalty.WAIT);
+        return game;
+    }
+
+    /**
+     * Bring a new game to the point in a replay after a number of actions, starting from the nearest keyframe. The
+     * reader is left at the next action, so the game can be stepped forward from there with next and apply.
+     * @param reader replay
+     * @param action number of actions to have been made
+     * @return the game at that point
+     */
+    public static Game seek(ReplayReader reader, int action) {
+        Game game = create(reader);
+        Keyframe keyframe = reader.seek(action);
+        if (keyframe != null) {
+            game.restoreState(keyframe.getState());
+        }
+        while (reader.getActions() < action && reader.next()) {
+            apply(game, reader);
+        }
+        return game;
+    }
+
+    /**
+     * Feed the rest of a replay to a game. The actions run straight away on this thread, as long as nothing else is
+     * using the game.
+     * @param game   game to play
+     * @param reader replay
+     * @return number of actions played
+     */
+    public static int play(Game game, ReplayReader reader) {
+        int actions = 0;
+        while (reader.next()) {
+            apply(game, reader);
+            actions++;
+        }
+        return actions;
+    }
+
+    /**
+     * Make the action of the current record in a game
+     * @param game   game to play
+     * @param reader replay, on the record to apply
+     */
+    public static void apply(Game game, ReplayReader reader) {
+        switch (reader.getType()) {
+            case ReplayFormat.START -> game.start();
+            case ReplayFormat.PLACE -> game.blockClicked(reader.getA(), reader.getB());
+            case ReplayFormat.ROTATE -> game.rotateCurrentPiece(reader.getA());
+            case ReplayFormat.SWAP -> game.swapCurrentPiece();
+            case ReplayFormat.SKIP -> game.skipPiece();
+            case ReplayFormat.LIFE -> game.addLives();
+            case ReplayFormat.CLEAR -> game.clearAll();
+            case ReplayFormat.TIMER -> game.expireTimer();
+            default -> throw new IllegalStateException("Unknown record type: " + reader.getType());
+        }
+    }
+}
@@ -2,7 +2,7 @@ package uk.ac.soton.comp1206.scene;
 
 import javafx.scene.Scene;
 import javafx.scene.paint.Color;
-import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.BaseGame;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
@@ -25,7 +25,7 @@ public abstract class BaseScene {
     /**
      * Game mode
      */
-    protected Game game;
+    protected BaseGame game;
 
     /**
      * Create a new scene, passing in the GameWindow the scene will be displayed in
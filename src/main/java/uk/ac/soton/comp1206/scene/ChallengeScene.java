@@ -3,6 +3,7 @@ package uk.ac.soton.comp1206.scene;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.value.ObservableValue;
@@ -19,27 +20,41 @@ import javafx.scene.text.Text;
 import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.bot.HintEngine;
+import uk.ac.soton.comp1206.bot.Move;
+import uk.ac.soton.comp1206.bot.WeightedHeuristic;
 import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 import uk.ac.soton.comp1206.component.GameBoard;
 import uk.ac.soton.comp1206.component.PieceBoard;
+import uk.ac.soton.comp1206.event.GameEvent;
+import uk.ac.soton.comp1206.game.BaseGame;
+import uk.ac.soton.comp1206.game.EventBus;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.game.GamePiece;
 import uk.ac.soton.comp1206.ui.GamePane;
+import uk.ac.soton.comp1206.ui.GameProperties;
 import uk.ac.soton.comp1206.ui.GameWindow;
 import uk.ac.soton.comp1206.ui.Multimedia;
 
-import java.util.HashSet;
+import java.util.BitSet;
 
 /**
  * The Single Player challenge scene. Holds the UI for the single player challenge mode in the game.
  */
 public class ChallengeScene extends BaseScene {
     private static final Logger logger = LogManager.getLogger(ChallengeScene.class);
+    /**
+     * System property giving the time allowed for refining each hint, in milliseconds
+     */
+    public static final String HINT_BUDGET_PROPERTY = "tetrecs.hint.budget";
     /**
      * Game mode
      */
-    protected Game game;
+    protected BaseGame game;
+    /**
+     * Bindable stats of the game
+     */
+    protected GameProperties stats;
     /**
      * Current and next piece
      */
@@ -64,6 +79,22 @@ public class ChallengeScene extends BaseScene {
      * Countdown timer at the bottom
      */
     private Rectangle timerBar;
+    /**
+     * Works out hints in the background
+     */
+    protected HintEngine hints;
+    /**
+     * Whether hints are shown
+     */
+    private volatile boolean hintsShown = false;
+    /**
+     * Subscription to the game's position while hints are shown, since every position published is a copy of the grid
+     */
+    private EventBus.Subscription<GameEvent.PositionChanged> positions;
+    /**
+     * Shop items that get the game going again when nothing fits, and the warning that nothing fits
+     */
+    private Text skipPieceText, clearGridText, stuckText;
 
     /**
      * Create a new Single Player challenge scene
@@ -105,7 +136,7 @@ public class ChallengeScene extends BaseScene {
         scoreText.getStyleClass().add("heading");
         var scoreNum = new Text();
         scoreNum.getStyleClass().add("score");
-        scoreNum.textProperty().bind(game.score.asString());
+        scoreNum.textProperty().bind(stats.score.asString());
         scoreBox.getChildren().addAll(scoreText, scoreNum);
 
         // Title
@@ -119,7 +150,7 @@ public class ChallengeScene extends BaseScene {
         livesText.getStyleClass().add("heading");
         var livesNum = new Text();
         livesNum.getStyleClass().add("lives");
-        livesNum.textProperty().bind(game.lives.asString());
+        livesNum.textProperty().bind(stats.lives.asString());
         livesBox.getChildren().addAll(livesText, livesNum);
 
         topBar.getChildren().addAll(scoreBox, title, livesBox);
@@ -130,7 +161,11 @@ public class ChallengeScene extends BaseScene {
         leftBar.setPadding(new Insets(0, 5, 0, 15));
         mainPane.setLeft(leftBar);
 
-        var skipPieceText = new Text("Skip piece");
+        stuckText = new Text("Nothing fits!\n\n");
+        stuckText.getStyleClass().add("heading");
+        stuckText.setVisible(false);
+
+        skipPieceText = new Text("Skip piece");
         skipPieceText.getStyleClass().add("heading-selectable");
         skipPieceText.setOnMouseClicked(e -> game.skipPiece());
         Text skipPieceText2 = new Text("50 points\n\n");
@@ -142,13 +177,20 @@ public class ChallengeScene extends BaseScene {
         var addLifeText2 = new Text("100 points\n\n");
         addLifeText2.getStyleClass().add("channelItem");
 
-        var clearGridText = new Text("Clear grid");
+        clearGridText = new Text("Clear grid");
         clearGridText.getStyleClass().add("heading-selectable");
         clearGridText.setOnMouseClicked(e -> game.clearAll());
-        var clearGridText2 = new Text("200 points");
+        var clearGridText2 = new Text("200 points\n\n");
         clearGridText2.getStyleClass().add("channelItem");
 
-        leftBar.getChildren().addAll(skipPieceText, skipPieceText2, addLifeText, addLifeText2, clearGridText, clearGridText2);
+        var hintText = new Text("Hint");
+        hintText.getStyleClass().add("heading-selectable");
+        hintText.setOnMouseClicked(e -> toggleHints());
+        var hintText2 = new Text("Free (H)");
+        hintText2.getStyleClass().add("channelItem");
+
+        leftBar.getChildren().addAll(stuckText, skipPieceText, skipPieceText2, addLifeText, addLifeText2, clearGridText,
+                clearGridText2, hintText, hintText2);
 
         /* Right */
         var rightBar = new VBox();
@@ -168,14 +210,14 @@ public class ChallengeScene extends BaseScene {
         levelText.getStyleClass().add("heading");
         var levelNum = new Text();
         levelNum.getStyleClass().add("level");
-        levelNum.textProperty().bind(game.level.asString());
+        levelNum.textProperty().bind(stats.level.asString());
 
         // Multiplier
         var multiplierText = new Text("Multiplier");
         multiplierText.getStyleClass().add("heading");
         var multiplierNum = new Text();
         multiplierNum.getStyleClass().add("multiplier");
-        multiplierNum.textProperty().bind(game.multiplier.asString());
+        multiplierNum.textProperty().bind(stats.multiplier.asString());
 
         // Current piece
         var incomingText = new Text("Incoming");
@@ -192,7 +234,7 @@ public class ChallengeScene extends BaseScene {
 
         rightBar.getChildren().addAll(highScoreText, highScoreNum, levelText, levelNum, multiplierText, multiplierNum, incomingText, currentPiece, nextPiece);
 
-        board = new GameBoard(game.getGrid(), (float) gameWindow.getWidth() / 2, (float) gameWindow.getWidth() / 2);
+        board = createBoard();
         board.getStyleClass().add("gameBox");
         // Handle block on game-board grid being clicked
         board.setOnBlockClick(this::blockClicked);
@@ -209,12 +251,15 @@ public class ChallengeScene extends BaseScene {
     }
 
     /**
-     * Replace the current piece with a new piece
-     * @param piece piece to be replaced
+     * Show the current and next pieces
+     * @param piece current piece
+     * @param next  next piece
      */
-    protected void nextPiece(GamePiece piece) {
+    protected void nextPiece(GamePiece piece, GamePiece next) {
         currentPiece.showPiece(piece);
-        nextPiece.showPiece(game.nextPiece);
+        nextPiece.showPiece(next);
+        // Any swap outlined was for the piece before, and a hint for the new position follows
+        nextPiece.hintPiece(false);
     }
 
     /**
@@ -224,7 +269,6 @@ public class ChallengeScene extends BaseScene {
         logger.info("Block rotated right");
         Multimedia.playAudio("rotate.wav");
         game.rotateCurrentPiece(1);
-        currentPiece.showPiece(game.currentPiece);
     }
 
     /**
@@ -234,7 +278,6 @@ public class ChallengeScene extends BaseScene {
         logger.info("Block rotated left");
         Multimedia.playAudio("rotate.wav");
         game.rotateCurrentPiece(3);
-        currentPiece.showPiece(game.currentPiece);
     }
 
     /**
@@ -244,15 +287,13 @@ public class ChallengeScene extends BaseScene {
         logger.info("Block swapped");
         Multimedia.playAudio("pling.wav");
         game.swapCurrentPiece();
-        currentPiece.showPiece(game.currentPiece);
-        nextPiece.showPiece(game.nextPiece);
     }
 
     /**
      * Fade animation after cleared line
-     * @param set set of block coordinates
+     * @param set set of cleared blocks
      */
-    protected void fadeLine(HashSet<GameBlockCoordinate> set) {
+    protected void fadeLine(BitSet set) {
         logger.info("Line cleared");
         board.fadeOut(set);
         Multimedia.playAudio("clear.wav");
@@ -277,12 +318,91 @@ public class ChallengeScene extends BaseScene {
         timeline.play();
     }
 
+    /**
+     * Turn hints on or off. Turning them on starts a hint for the position as it is.
+     */
+    protected void toggleHints() {
+        hintsShown = !hintsShown;
+        logger.info("Hints {}", hintsShown ? "on" : "off");
+        if (!hintsShown) {
+            positions.cancel();
+            positions = null;
+            hints.cancel();
+            return;
+        }
+        // Heard on the game's own thread, so that a hint in progress is abandoned as soon as the position changes
+        positions = game.getEvents().subscribe(GameEvent.PositionChanged.class, this::requestHint);
+        game.refreshPosition();
+    }
+
+    /**
+     * Start working out a hint for a position
+     * @param position position of the game
+     */
+    private void requestHint(GameEvent.PositionChanged position) {
+        hints.request(position.getGrid(), position.getCurrent(), position.getNext(), position.getMultiplier());
+    }
+
+    /**
+     * Show the best move found so far on the board
+     * @param move move to show, or null to show none
+     */
+    protected void showHint(Move move) {
+        if (move == null || !hintsShown) {
+            board.clearHint();
+            nextPiece.hintPiece(false);
+            return;
+        }
+        // A swap places the next piece, so that is outlined too
+        nextPiece.hintPiece(move.isSwap());
+        var piece = move.getPiece();
+        int left = move.getX() - piece.getPivotX();
+        int top = move.getY() - piece.getPivotY();
+        var cells = new BitSet();
+        for (int cell = 0; cell < piece.getCellCount(); cell++) {
+            cells.set((top + piece.getCellY(cell)) * board.getCols() + left + piece.getCellX(cell));
+        }
+        board.showHint(cells);
+    }
+
+    /**
+     * Show whether nothing fits, pointing the player at skipping the piece or clearing the grid
+     * @param stuck true if neither the current nor the next piece can be placed anywhere
+     */
+    private void showStuck(boolean stuck) {
+        stuckText.setVisible(stuck);
+        for (var item : new Text[] {skipPieceText, clearGridText}) {
+            item.getStyleClass().remove("selected");
+            if (stuck) item.getStyleClass().add("selected");
+        }
+    }
+
+    /**
+     * Check on the game's inbox whether anything fits again, after the pieces or the stats changed
+     */
+    private void checkStuck() {
+        if (!stuckText.isVisible()) return;
+        game.getInbox().submit(() -> {
+            boolean stuck = !game.hasLegalPlacement();
+            Platform.runLater(() -> showStuck(stuck));
+        });
+    }
+
+    /**
+     * Create the game board, for the game made by setupGame
+     * @return game board showing the game's grid
+     */
+    protected GameBoard createBoard() {
+        var grid = ((Game) game).getGrid();
+        return new GameBoard(grid, (float) gameWindow.getWidth() / 2, (float) gameWindow.getWidth() / 2);
+    }
+
     /**
      * Handle when a block is clicked
      * @param gameBlock the Game Block that was clocked
      */
-    private void blockClicked(GameBlock gameBlock) {
-        game.blockClicked(gameBlock);
+    protected void blockClicked(GameBlock gameBlock) {
+        game.blockClicked(gameBlock.getX(), gameBlock.getY());
     }
 
     /**
@@ -292,6 +412,9 @@ public class ChallengeScene extends BaseScene {
         logger.info("Starting a new challenge");
         //Start new game
         game = new Game(5, 5);
+        // Nothing fitting is only shown, not punished straight away, so the player can skip or clear before the
+        // countdown runs out
+        stats = new GameProperties(game);
     }
 
     /**
@@ -316,14 +439,14 @@ public class ChallengeScene extends BaseScene {
                 break;
             case S:
             case DOWN:
-                if (y < game.getRows() - 1) {
+                if (y < board.getRows() - 1) {
                     y++;
                     board.hover(board.getBlock(x, y));
                 }
                 break;
             case D:
             case RIGHT:
-                if (x < game.getCols() - 1) {
+                if (x < board.getCols() - 1) {
                     x++;
                     board.hover(board.getBlock(x, y));
                 }
@@ -346,8 +469,13 @@ public class ChallengeScene extends BaseScene {
             case SPACE:
                 swap();
                 break;
+            case H:
+                toggleHints();
+                break;
             case ESCAPE:
+                hints.shutdown();
                 game.stopTimer();
+                stats.stop();
                 Multimedia.playAudio("back.mp3");
                 gameWindow.startMenu();
                 break;
@@ -383,16 +511,29 @@ public class ChallengeScene extends BaseScene {
     public void initialize() {
         logger.info("Initializing Challenge");
         Multimedia.playMusic("game_start.wav");
-        game.setNextPieceListener(this::nextPiece);
-        game.setOnLineCleared(this::fadeLine);
-        game.setOnGameLoop(this::timer);
-        game.score.addListener(this::getHighScore);
+        // The game publishes from its own threads, so everything is delivered on the JavaFX thread. Only the latest
+        // pieces and countdown matter if the UI falls behind.
+        hints = new HintEngine(new WeightedHeuristic(), this::showHint, Platform::runLater);
+        hints.setBudget(Long.getLong(HINT_BUDGET_PROPERTY, HintEngine.DEFAULT_BUDGET));
+        var events = game.getEvents();
+        events.subscribeLatest(GameEvent.PieceChanged.class, event -> nextPiece(event.getCurrent(), event.getNext()),
+                Platform::runLater);
+        events.subscribe(GameEvent.LineCleared.class, event -> fadeLine(event.getCells()), Platform::runLater);
+        events.subscribeLatest(GameEvent.GameLoop.class, event -> timer(event.getDelay()), Platform::runLater);
+        events.subscribe(GameEvent.Sound.class, event -> Multimedia.playAudio(event.getSound()), Platform::runLater);
+        events.subscribe(GameEvent.NoLegalPlacement.class, event -> showStuck(true), Platform::runLater);
+        events.subscribeLatest(GameEvent.PieceChanged.class, event -> checkStuck(), Platform::runLater);
+        events.subscribeLatest(GameEvent.StatsChanged.class, event -> checkStuck(), Platform::runLater);
+        events.subscribe(GameEvent.GameOver.class, event -> {
+            hints.shutdown();
+            game.stopTimer();
+            stats.stop();
+            gameWindow.startScores(game);
+        }, Platform::runLater);
+        stats.score.addListener(this::getHighScore);
+        stats.start();
         highScore.set(ScoresScene.loadScores().get(0).getValue());
         game.start();
         scene.setOnKeyPressed(this::keyboard);
-        game.setOnGameOver(() -> {
-            game.stopTimer();
-            gameWindow.startScores(game);
-        });
     }
 }
@@ -12,7 +12,7 @@ import javafx.scene.text.Text;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.PieceBoard;
-import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PieceSet;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 import uk.ac.soton.comp1206.ui.Multimedia;
@@ -22,6 +22,10 @@ import uk.ac.soton.comp1206.ui.Multimedia;
  */
 public class InstructionsScene extends BaseScene {
     private static final Logger logger = LogManager.getLogger(InstructionsScene.class);
+    /**
+     * Number of pieces in each row of the gallery
+     */
+    private static final int PIECES_PER_ROW = 5;
 
     /**
      * Create a new instructions scene
@@ -91,18 +95,19 @@ public class InstructionsScene extends BaseScene {
         grid.setAlignment(Pos.CENTER);
         grid.setSpacing(10);
 
-        // Dynamically generated game pieces
-        for (int x = 0; x < 3; x++) {
-            var hBox = new HBox();
-            grid.getChildren().add(hBox);
-            hBox.setAlignment(Pos.CENTER);
-            hBox.setSpacing(10);
-            for (int y = 0; y < 5; y++) {
-                var pieceBoard = new PieceBoard(50, 50);
-                GamePiece gamePiece = GamePiece.createPiece(x * 5 + y);
-                pieceBoard.showPiece(gamePiece);
-                hBox.getChildren().add(pieceBoard);
+        // Dynamically generated from the pieces being played with
+        var pieces = PieceSet.getActive();
+        HBox hBox = null;
+        for (int piece = 0; piece < pieces.size(); piece++) {
+            if (piece % PIECES_PER_ROW == 0) {
+                hBox = new HBox();
+                grid.getChildren().add(hBox);
+                hBox.setAlignment(Pos.CENTER);
+                hBox.setSpacing(10);
             }
+            var pieceBoard = new PieceBoard(50, 50);
+            pieceBoard.showPiece(pieces.getPiece(piece, 0));
+            hBox.getChildren().add(pieceBoard);
         }
         centerBox.getChildren().addAll(image, piecesText, grid);
     }
@@ -0,0 +1,125 @@
+package uk.ac.soton.comp1206.scene;
+
+import javafx.application.Platform;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.ScrollEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.component.GameBlock;
+import uk.ac.soton.comp1206.component.GameBoard;
+import uk.ac.soton.comp1206.component.MarathonBoard;
+import uk.ac.soton.comp1206.event.GameEvent;
+import uk.ac.soton.comp1206.game.MarathonGame;
+import uk.ac.soton.comp1206.ui.GameProperties;
+import uk.ac.soton.comp1206.ui.GameWindow;
+import uk.ac.soton.comp1206.ui.Multimedia;
+
+/**
+ * The marathon scene. Plays like the challenge, but on a board with no edges, seen through a window that can be moved
+ * with Shift and the arrow keys or WASD, or with the mouse wheel.
+ */
+public class MarathonScene extends ChallengeScene {
+    private static final Logger logger = LogManager.getLogger(MarathonScene.class);
+    /**
+     * Number of blocks across and down the window onto the board
+     */
+    private static final int WINDOW = 12;
+    /**
+     * Game board, as a window onto the marathon board
+     */
+    private MarathonBoard window;
+
+    /**
+     * Create a new marathon scene
+     * @param gameWindow the Game Window
+     */
+    public MarathonScene(GameWindow gameWindow) {
+        super(gameWindow);
+        logger.info("Creating Marathon Scene");
+    }
+
+    /**
+     * Set up the game object and model
+     */
+    @Override
+    public void setupGame() {
+        logger.info("Starting a new marathon");
+        // There is always room somewhere, so no penalty for a piece that fits nowhere is needed
+        game = new MarathonGame();
+        stats = new GameProperties(game);
+    }
+
+    /**
+     * Create the game board
+     * @return window onto the marathon board
+     */
+    @Override
+    protected GameBoard createBoard() {
+        window = new MarathonBoard((MarathonGame) game, WINDOW, WINDOW, (float) gameWindow.getWidth() / 2,
+                (float) gameWindow.getWidth() / 2);
+        window.setOnScroll(this::scroll);
+        return window;
+    }
+
+    /**
+     * Handle when a block is clicked, by placing at the block of the marathon board under it
+     * @param gameBlock the Game Block that was clicked
+     */
+    @Override
+    protected void blockClicked(GameBlock gameBlock) {
+        game.blockClicked(window.getLeft() + gameBlock.getX(), window.getTop() + gameBlock.getY());
+    }
+
+    /**
+     * Hints search a fixed grid, so there are none in a marathon
+     */
+    @Override
+    protected void toggleHints() {
+        logger.info("No hints in a marathon");
+        Multimedia.playAudio("fail.wav");
+    }
+
+    /**
+     * Move the window with Shift and the arrow keys or WASD. Caught before the challenge's own keyboard handling, so
+     * the cursor stays put.
+     * @param key key pressed
+     */
+    private void pan(KeyEvent key) {
+        if (!key.isShiftDown()) return;
+        switch (key.getCode()) {
+            case W, UP -> window.scroll(0, -1);
+            case A, LEFT -> window.scroll(-1, 0);
+            case S, DOWN -> window.scroll(0, 1);
+            case D, RIGHT -> window.scroll(1, 0);
+            default -> {
+                return;
+            }
+        }
+        key.consume();
+    }
+
+    /**
+     * Move the window a block at a time with the mouse wheel, sideways if Shift is held
+     * @param event scroll
+     */
+    private void scroll(ScrollEvent event) {
+        int dx = (int) -Math.signum(event.getDeltaX());
+        int dy = (int) -Math.signum(event.getDeltaY());
+        if (dx != 0 || dy != 0) window.scroll(dx, dy);
+        event.consume();
+    }
+
+    /**
+     * Initialize the scene and start the game
+     */
+    @Override
+    public void initialize() {
+        super.initialize();
+        // The board only changes along with the pieces or the stats, and the window is copied afresh for the latest
+        var events = game.getEvents();
+        events.subscribeLatest(GameEvent.PieceChanged.class, event -> window.refresh(), Platform::runLater);
+        events.subscribeLatest(GameEvent.StatsChanged.class, event -> window.refresh(), Platform::runLater);
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, this::pan);
+        window.refresh();
+    }
+}
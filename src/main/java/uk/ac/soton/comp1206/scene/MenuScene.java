@@ -30,7 +30,11 @@ public class MenuScene extends BaseScene {
     /**
      * Menu items
      */
-    private Text local, instructions, settings, quit;
+    private Text local, marathon, instructions, settings, quit;
+    /**
+     * Menu items, in the order they are selected in
+     */
+    private Text[] items;
 
     /**
      * Create a new menu scene
@@ -63,7 +67,7 @@ public class MenuScene extends BaseScene {
                 break;
             case S:
             case DOWN:
-                if (selector < 4) {
+                if (selector < items.length) {
                     selector++;
                     paint();
                 }
@@ -72,10 +76,12 @@ public class MenuScene extends BaseScene {
                 if (selector == 1) {
                     gameWindow.startChallenge();
                 } else if (selector == 2) {
-                    gameWindow.startInstructions();
+                    gameWindow.startMarathon();
                 } else if (selector == 3) {
-                    gameWindow.startSettings();
+                    gameWindow.startInstructions();
                 } else if (selector == 4) {
+                    gameWindow.startSettings();
+                } else if (selector == 5) {
                     App.getInstance().shutdown();
                 }
                 break;
@@ -86,46 +92,14 @@ public class MenuScene extends BaseScene {
      * Create hover effect over text when selected
      */
     public void paint() {
-        switch (selector) {
-            case 1 -> {
-                local.getStyleClass().remove("menuItem");
-                local.getStyleClass().add("menuItem-fixed");
-                instructions.getStyleClass().add("menuItem");
-                instructions.getStyleClass().remove("menuItem-fixed");
-                settings.getStyleClass().add("menuItem");
-                settings.getStyleClass().remove("menuItem-fixed");
-                quit.getStyleClass().add("menuItem");
-                quit.getStyleClass().remove("menuItem-fixed");
-            }
-            case 2 -> {
-                local.getStyleClass().add("menuItem");
-                local.getStyleClass().remove("menuItem-fixed");
-                instructions.getStyleClass().remove("menuItem");
-                instructions.getStyleClass().add("menuItem-fixed");
-                settings.getStyleClass().add("menuItem");
-                settings.getStyleClass().remove("menuItem-fixed");
-                quit.getStyleClass().add("menuItem");
-                quit.getStyleClass().remove("menuItem-fixed");
-            }
-            case 3 -> {
-                local.getStyleClass().add("menuItem");
-                local.getStyleClass().remove("menuItem-fixed");
-                instructions.getStyleClass().add("menuItem");
-                instructions.getStyleClass().remove("menuItem-fixed");
-                settings.getStyleClass().remove("menuItem");
-                settings.getStyleClass().add("menuItem-fixed");
-                quit.getStyleClass().add("menuItem");
-                quit.getStyleClass().remove("menuItem-fixed");
-            }
-            case 4 -> {
-                local.getStyleClass().add("menuItem");
-                local.getStyleClass().remove("menuItem-fixed");
-                instructions.getStyleClass().add("menuItem");
-                instructions.getStyleClass().remove("menuItem-fixed");
-                settings.getStyleClass().add("menuItem");
-                settings.getStyleClass().remove("menuItem-fixed");
-                quit.getStyleClass().remove("menuItem");
-                quit.getStyleClass().add("menuItem-fixed");
+        for (int i = 0; i < items.length; i++) {
+            var style = items[i].getStyleClass();
+            if (i == selector - 1) {
+                style.remove("menuItem");
+                style.add("menuItem-fixed");
+            } else {
+                style.add("menuItem");
+                style.remove("menuItem-fixed");
             }
         }
     }
@@ -175,6 +149,12 @@ public class MenuScene extends BaseScene {
             Multimedia.playAudio("select.mp3");
             gameWindow.startChallenge();
         });
+        marathon = new Text("Marathon");
+        marathon.getStyleClass().add("menuItem");
+        marathon.setOnMouseClicked(e -> {
+            Multimedia.playAudio("select.mp3");
+            gameWindow.startMarathon();
+        });
         instructions = new Text("Instructions");
         instructions.getStyleClass().add("menuItem");
         instructions.setOnMouseClicked(e -> {
@@ -191,7 +171,8 @@ public class MenuScene extends BaseScene {
         quit.getStyleClass().add("menuItem");
         quit.setOnMouseClicked(e -> App.getInstance().shutdown());
 
-        menu.getChildren().addAll(local, instructions, settings, quit);
+        items = new Text[]{local, marathon, instructions, settings, quit};
+        menu.getChildren().addAll(items);
     }
 
     /**
@@ -14,7 +14,7 @@ import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.ScoresList;
-import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.BaseGame;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 import uk.ac.soton.comp1206.ui.Multimedia;
@@ -59,7 +59,7 @@ public class ScoresScene extends BaseScene {
      * @param gameWindow the Game Window
      * @param game       the game
      */
-    public ScoresScene(GameWindow gameWindow, Game game) {
+    public ScoresScene(GameWindow gameWindow, BaseGame game) {
         super(gameWindow);
         this.game = game;
         logger.info("Creating Scores Scene");
@@ -163,7 +163,7 @@ public class ScoresScene extends BaseScene {
         }
         int scoreNumber = 0;
         int finalScoreNumber = scoreNumber;
-        int currentScore = game.score.get();
+        int currentScore = game.getScore();
         var nameField = new TextField();
         int lowestLocalScore = localScoresList.get(localScoresList.size() - 1).getValue();
         nameField.setMaxWidth(200);
@@ -0,0 +1,87 @@
+package uk.ac.soton.comp1206.ui;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import uk.ac.soton.comp1206.game.BaseGame;
+import uk.ac.soton.comp1206.game.GameStats;
+
+/**
+ * Exposes the score, level, lives and multiplier of a Game as properties that the UI can bind to.
+ *
+ * The game publishes an immutable snapshot of its stats whenever they change. The properties are brought up to date
+ * with the latest snapshot at most once per animation pulse, on the JavaFX thread, so a burst of changes such as a
+ * combo chain only causes one round of listeners, layout and CSS.
+ */
+public class GameProperties {
+    /**
+     * Current score
+     */
+    public final IntegerProperty score = new SimpleIntegerProperty(0);
+    /**
+     * Current level
+     */
+    public final IntegerProperty level = new SimpleIntegerProperty(0);
+    /**
+     * Lives left
+     */
+    public final IntegerProperty lives = new SimpleIntegerProperty(0);
+    /**
+     * Current multiplier
+     */
+    public final IntegerProperty multiplier = new SimpleIntegerProperty(0);
+    /**
+     * Game being followed
+     */
+    private final BaseGame game;
+    /**
+     * Checks for a new snapshot on every pulse
+     */
+    private final AnimationTimer pulse;
+    /**
+     * Snapshot currently shown by the properties
+     */
+    private GameStats shown;
+
+    /**
+     * Create the properties for a game, starting from its current stats
+     * @param game game to follow
+     */
+    public GameProperties(BaseGame game) {
+        this.game = game;
+        update();
+        pulse = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                update();
+            }
+        };
+    }
+
+    /**
+     * Start following the game, once per pulse
+     */
+    public void start() {
+        pulse.start();
+    }
+
+    /**
+     * Stop following the game
+     */
+    public void stop() {
+        pulse.stop();
+    }
+
+    /**
+     * Copy the latest snapshot into the properties, if it is new
+     */
+    private void update() {
+        GameStats stats = game.getStats();
+        if (stats == shown) return;
+        shown = stats;
+        score.set(stats.getScore());
+        level.set(stats.getLevel());
+        lives.set(stats.getLives());
+        multiplier.set(stats.getMultiplier());
+    }
+}
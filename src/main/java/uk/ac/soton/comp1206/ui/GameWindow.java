@@ -9,7 +9,7 @@ import javafx.stage.Stage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.App;
-import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.BaseGame;
 import uk.ac.soton.comp1206.scene.*;
 
 /**
@@ -77,11 +77,18 @@ public class GameWindow {
         loadScene(new ChallengeScene(this));
     }
 
+    /**
+     * Display the marathon, on a board with no edges
+     */
+    public void startMarathon() {
+        loadScene(new MarathonScene(this));
+    }
+
     /**
      * Display scores
      * @param game game mode to display scores from
      */
-    public void startScores(Game game) {
+    public void startScores(BaseGame game) {
         loadScene(new ScoresScene(this, game));
     }
 
@@ -0,0 +1,38 @@
+package uk.ac.soton.comp1206.bench;
+
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.SplittableRandom;
+
+/**
+ * Builds boards filled to a given degree, the same ones on every run
+ */
+final class BoardState {
+    /**
+     * Seed for the filled blocks, fixed so that runs can be compared
+     */
+    private static final long SEED = 1206;
+
+    private BoardState() {
+    }
+
+    /**
+     * Create a grid with roughly the given share of its blocks filled
+     * @param cols     number of columns
+     * @param rows     number of rows
+     * @param fullness percentage of blocks to fill
+     * @return the grid
+     */
+    static Grid create(int cols, int rows, int fullness) {
+        var random = new SplittableRandom(SEED);
+        var grid = new Grid(cols, rows);
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                if (random.nextInt(100) < fullness) {
+                    grid.set(x, y, 1 + random.nextInt(15));
+                }
+            }
+        }
+        return grid;
+    }
+}
@@ -0,0 +1,81 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks GameBlockCoordinate as a HashSet key, which relies on its hashCode and equals
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CoordinateBenchmark {
+    /**
+     * Width and height of the board
+     */
+    @Param({"5", "10"})
+    public int size;
+    /**
+     * Set holding every coordinate on the board
+     */
+    private HashSet<GameBlockCoordinate> set;
+    /**
+     * Fresh coordinates equal to the ones in the set, so their hashes are not cached yet
+     */
+    private int[] xs, ys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        set = new HashSet<>();
+        xs = new int[size * size];
+        ys = new int[size * size];
+        for (int i = 0; i < size * size; i++) {
+            xs[i] = i % size;
+            ys[i] = i / size;
+            set.add(new GameBlockCoordinate(xs[i], ys[i]));
+        }
+    }
+
+    /**
+     * Fill a new set with every coordinate on the board
+     * @return the set
+     */
+    @Benchmark
+    public HashSet<GameBlockCoordinate> add() {
+        var filled = new HashSet<GameBlockCoordinate>();
+        for (int i = 0; i < xs.length; i++) {
+            filled.add(new GameBlockCoordinate(xs[i], ys[i]));
+        }
+        return filled;
+    }
+
+    /**
+     * Look up every coordinate on the board with a new, equal coordinate
+     * @return number found
+     */
+    @Benchmark
+    public int contains() {
+        int found = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (set.contains(new GameBlockCoordinate(xs[i], ys[i]))) found++;
+        }
+        return found;
+    }
+}
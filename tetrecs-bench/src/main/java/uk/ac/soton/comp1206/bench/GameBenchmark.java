@@ -0,0 +1,77 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.TimingWheel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks clearing lines after a placement, with the game's scoring and placement indexes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.apache.logging.log4j.simplelog.level=WARN")
+@State(Scope.Thread)
+public class GameBenchmark {
+    /**
+     * Percentage of blocks filled, on top of one full row and one full column
+     */
+    @Param({"0", "25", "50", "75"})
+    public int fullness;
+    /**
+     * Game being played, on a timing wheel that never moves
+     */
+    private Game game;
+    /**
+     * Board to restore before each line clear
+     */
+    private Grid board;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        game = new Game(5, 5, new TimingWheel(TimingWheel.DEFAULT_TICK, TimingWheel.DEFAULT_SIZE));
+        game.initializeGame();
+        board = BoardState.create(5, 5, fullness);
+        for (int i = 0; i < 5; i++) {
+            board.set(i, 2, 1);
+            board.set(2, i, 1);
+        }
+    }
+
+    /**
+     * Restore the board, the baseline for afterPiece
+     * @return the game's board
+     */
+    @Benchmark
+    public Grid restore() {
+        Grid grid = game.getGrid();
+        grid.copyFrom(board);
+        return grid;
+    }
+
+    /**
+     * Restore the board and clear its full row and column
+     * @return score afterwards
+     */
+    @Benchmark
+    public int afterPiece() {
+        game.getGrid().copyFrom(board);
+        game.afterPiece();
+        return game.getScore();
+    }
+}
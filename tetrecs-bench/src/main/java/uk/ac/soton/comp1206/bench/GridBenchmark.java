@@ -0,0 +1,111 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.PieceSet;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks checking and placing pieces on boards of varying fullness
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GridBenchmark {
+    /**
+     * Width and height of the board
+     */
+    @Param({"5", "10"})
+    public int size;
+    /**
+     * Percentage of blocks filled
+     */
+    @Param({"0", "25", "50", "75"})
+    public int fullness;
+    /**
+     * Board as built
+     */
+    private Grid board;
+    /**
+     * Board that placements are made on, reset from the original each time
+     */
+    private Grid scratch;
+    /**
+     * Every piece in every rotation
+     */
+    private GamePiece[] pieces;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        board = BoardState.create(size, size, fullness);
+        scratch = new Grid(board);
+        int count = PieceSet.getActive().size();
+        pieces = new GamePiece[count * GamePiece.ROTATIONS];
+        for (int piece = 0; piece < count; piece++) {
+            for (int rotation = 0; rotation < GamePiece.ROTATIONS; rotation++) {
+                pieces[piece * GamePiece.ROTATIONS + rotation] = GamePiece.createPiece(piece, rotation);
+            }
+        }
+    }
+
+    /**
+     * Check every piece in every rotation at every position, as a search does
+     * @param blackhole sink for the results
+     */
+    @Benchmark
+    public void canPlayPiece(Blackhole blackhole) {
+        for (GamePiece piece : pieces) {
+            for (int y = -1; y < size - 1; y++) {
+                for (int x = -1; x < size - 1; x++) {
+                    blackhole.consume(board.canPlayPiece(piece, x, y));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reset the scratch board, the baseline for playPiece
+     * @return the scratch board
+     */
+    @Benchmark
+    public Grid copy() {
+        scratch.copyFrom(board);
+        return scratch;
+    }
+
+    /**
+     * Reset the scratch board and play every piece in every rotation wherever it first fits
+     * @return number of pieces played
+     */
+    @Benchmark
+    public int playPiece() {
+        int played = 0;
+        for (GamePiece piece : pieces) {
+            scratch.copyFrom(board);
+            for (int cell = 0; cell < size * size; cell++) {
+                if (scratch.playPiece(piece, cell % size - 1, cell / size - 1)) {
+                    played++;
+                    break;
+                }
+            }
+        }
+        return played;
+    }
+}
@@ -0,0 +1,101 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.ac.soton.comp1206.bot.BoardBatch;
+import uk.ac.soton.comp1206.bot.WeightedHeuristic;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks rating boards with the weighted heuristic, one Grid at a time and a whole batch at a time, with and
+ * without the Vector API
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector",
+        "-Dorg.apache.logging.log4j.simplelog.level=WARN"})
+@State(Scope.Thread)
+public class HeuristicBenchmark {
+    /**
+     * Number of boards rated per invocation
+     */
+    private static final int BOARDS = 1024;
+    /**
+     * Width and height of the boards
+     */
+    @Param({"5", "8"})
+    public int size;
+    /**
+     * Whether batches may use the Vector API
+     */
+    @Param({"true", "false"})
+    public boolean vector;
+    /**
+     * Boards to rate, filled to every degree from empty to full
+     */
+    private Grid[] grids;
+    /**
+     * The same boards as a batch
+     */
+    private BoardBatch batch;
+    /**
+     * Rating of each board in the batch
+     */
+    private double[] values;
+    /**
+     * Heuristic rating the boards
+     */
+    private final WeightedHeuristic heuristic = new WeightedHeuristic();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Read once, when the first batch is created
+        System.setProperty("tetrecs.vector", String.valueOf(vector));
+        grids = new Grid[BOARDS];
+        batch = new BoardBatch(size, size, BOARDS);
+        values = new double[BOARDS];
+        for (int i = 0; i < BOARDS; i++) {
+            grids[i] = BoardState.create(size, size, i * 100 / BOARDS);
+            batch.add(grids[i]);
+        }
+    }
+
+    /**
+     * Rate every board one Grid at a time, as the search does for heuristics that cannot batch
+     * @param blackhole sink for the ratings
+     */
+    @Benchmark
+    @OperationsPerInvocation(BOARDS)
+    public void grid(Blackhole blackhole) {
+        for (Grid grid : grids) {
+            blackhole.consume(heuristic.evaluate(grid));
+        }
+    }
+
+    /**
+     * Rate every board in one batch
+     * @return the ratings
+     */
+    @Benchmark
+    @OperationsPerInvocation(BOARDS)
+    public double[] batch() {
+        heuristic.evaluate(batch, values);
+        return values;
+    }
+}
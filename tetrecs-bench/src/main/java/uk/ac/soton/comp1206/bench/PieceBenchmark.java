@@ -0,0 +1,93 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PieceGenerator;
+import uk.ac.soton.comp1206.game.PieceSet;
+import uk.ac.soton.comp1206.game.TimingWheel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks making and rotating pieces
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.apache.logging.log4j.simplelog.level=WARN")
+@State(Scope.Thread)
+public class PieceBenchmark {
+    /**
+     * Game to spawn pieces from
+     */
+    private Game game;
+    /**
+     * Generator dealing from a bag
+     */
+    private PieceGenerator bag;
+    /**
+     * Piece to rotate
+     */
+    private GamePiece piece;
+    /**
+     * Piece number to create next
+     */
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        game = new Game(5, 5, new TimingWheel(TimingWheel.DEFAULT_TICK, TimingWheel.DEFAULT_SIZE));
+        piece = GamePiece.createPiece(7);
+        bag = PieceGenerator.bag(1);
+    }
+
+    /**
+     * Rotate a piece a step at a time
+     * @return the rotated piece
+     */
+    @Benchmark
+    public GamePiece rotate() {
+        piece = piece.rotate();
+        return piece;
+    }
+
+    /**
+     * Create each piece in turn
+     * @return the piece
+     */
+    @Benchmark
+    public GamePiece createPiece() {
+        next = (next + 1) % PieceSet.getActive().size();
+        return GamePiece.createPiece(next);
+    }
+
+    /**
+     * Create a random piece the way the game does
+     * @return the piece
+     */
+    @Benchmark
+    public GamePiece spawnPiece() {
+        return game.spawnPiece();
+    }
+
+    /**
+     * Deal a piece from a bag
+     * @return the piece
+     */
+    @Benchmark
+    public GamePiece bagPiece() {
+        return bag.next();
+    }
+}
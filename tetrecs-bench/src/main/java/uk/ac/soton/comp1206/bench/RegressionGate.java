@@ -0,0 +1,106 @@
+package uk.ac.soton.comp1206.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares a benchmark run against a baseline and fails if anything got slower by more than a tolerance. Both runs are
+ * JMH CSV results, written with -rf csv, in a time per operation mode so that a higher score is worse. Of the GC
+ * profiler's results only the bytes allocated per operation are compared, and any allocation where there was none
+ * counts as a regression.
+ *
+ * Usage: RegressionGate baseline.csv current.csv [tolerance percent, default 10]
+ */
+public class RegressionGate {
+
+    /**
+     * Compare two runs, exiting with status 1 on a regression
+     * @param args baseline file, current file and optional tolerance
+     * @throws IOException if a file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: RegressionGate baseline.csv current.csv [tolerance percent]");
+            System.exit(2);
+        }
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Double> baseline = read(Path.of(args[0]));
+        Map<String, Double> current = read(Path.of(args[1]));
+
+        int regressions = 0;
+        for (var entry : current.entrySet()) {
+            Double before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.println("NEW   " + entry.getKey());
+                continue;
+            }
+            double change = before == 0 ? (entry.getValue() < 1 ? 0 : Double.POSITIVE_INFINITY)
+                    : (entry.getValue() - before) / before * 100;
+            boolean regressed = change > tolerance;
+            if (regressed) regressions++;
+            System.out.printf(Locale.ROOT, "%s %+7.1f%% %s%n", regressed ? "SLOW " : "OK   ", change, entry.getKey());
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) slower than the baseline by more than " + tolerance + "%");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Read the scores from a JMH CSV result file, keyed by benchmark name and parameters
+     * @param file result file
+     * @return score of each benchmark
+     * @throws IOException if the file cannot be read
+     */
+    private static Map<String, Double> read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        List<String> header = split(lines.get(0));
+        int benchmark = header.indexOf("Benchmark");
+        int score = header.indexOf("Score");
+        var scores = new LinkedHashMap<String, Double>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) continue;
+            List<String> fields = split(line);
+            String name = fields.get(benchmark);
+            // Secondary results, such as the GC profiler's, are named after the benchmark with a suffix
+            if (name.contains(":") && !name.endsWith("gc.alloc.rate.norm")) continue;
+            var key = new StringBuilder(name);
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && i < fields.size() && !fields.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring(7)).append('=').append(fields.get(i));
+                }
+            }
+            scores.put(key.toString(), Double.parseDouble(fields.get(score)));
+        }
+        return scores;
+    }
+
+    /**
+     * Split a CSV line, removing quotes
+     * @param line line
+     * @return fields
+     */
+    private static List<String> split(String line) {
+        var fields = new ArrayList<String>();
+        var field = new StringBuilder();
+        boolean quoted = false;
+        for (char c : line.toCharArray()) {
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}